@@ -0,0 +1,45 @@
+package be.kuleuven.codes.tup.useful;
+
+import jdk.incubator.vector.*;
+
+/**
+ * SIMD implementation of the {@link Kernels} with the JDK Vector API, using
+ * the preferred vector size of the platform up to 256 bits (8 ints): rows of
+ * the cost matrices have m elements, so wider vectors would leave most rows
+ * to the scalar loops that process the tails of the arrays.
+ * <p>
+ * This class requires JDK 16+ (compiled and started with --add-modules
+ * jdk.incubator.vector); it is loaded by reflection, so the rest of the
+ * solver does not depend on it.
+ *
+ * @author Tulio Toffolo
+ */
+public class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.vectorBitSize() > 256
+      ? IntVector.SPECIES_256 : IntVector.SPECIES_PREFERRED;
+
+
+    public String getName() {
+        return "vector (" + SPECIES.vectorBitSize() + " bits)";
+    }
+
+    public void add(int dst[], int dstOffset, int a[], int aOffset, int b[], int bOffset, int length) {
+        int k = 0, bound = SPECIES.loopBound(length);
+        for (; k < bound; k += SPECIES.length())
+            IntVector.fromArray(SPECIES, a, aOffset + k).add(IntVector.fromArray(SPECIES, b, bOffset + k)).intoArray(dst, dstOffset + k);
+        for (; k < length; k++)
+            dst[dstOffset + k] = a[aOffset + k] + b[bOffset + k];
+    }
+
+    public void select(int dst[], int dstOffset, int a[], int aOffset, boolean mask[], int maskOffset, int value, int length) {
+        int k = 0, bound = SPECIES.loopBound(length);
+        IntVector values = IntVector.broadcast(SPECIES, value);
+        for (; k < bound; k += SPECIES.length()) {
+            VectorMask<Integer> selected = VectorMask.fromArray(SPECIES, mask, maskOffset + k);
+            values.blend(IntVector.fromArray(SPECIES, a, aOffset + k), selected).intoArray(dst, dstOffset + k);
+        }
+        for (; k < length; k++)
+            dst[dstOffset + k] = mask[maskOffset + k] ? a[aOffset + k] : value;
+    }
+}
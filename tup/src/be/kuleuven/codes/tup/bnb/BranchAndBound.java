@@ -1,13 +1,16 @@
 package be.kuleuven.codes.tup.bnb;
 
 import be.kuleuven.codes.tup.heuristic.*;
+import be.kuleuven.codes.tup.heuristic.assignment.*;
 import be.kuleuven.codes.tup.model.*;
 import be.kuleuven.codes.tup.model.solution.*;
 import be.kuleuven.codes.tup.thread.*;
 import be.kuleuven.codes.tup.useful.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.function.*;
 
 /**
  * This class implements the decomposition-based branch-and-bound presented by
@@ -17,6 +20,16 @@ import java.util.concurrent.atomic.*;
  */
 public class BranchAndBound {
 
+    /**
+     * Maximum number of pending events; further events are dropped.
+     */
+    private static final int EVENT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * Time between two evaluations of the {@link ThreadBalancer}.
+     */
+    private static final long BALANCE_PERIOD_MILLIS = 5000;
+
     public final Problem problem;
     public final EdgePriority edgePriority;
     public final PartialMatching partialMatching;
@@ -33,6 +46,17 @@ public class BranchAndBound {
     private volatile int ub;
     private volatile Solution bestSolution = null;
 
+    private List<SolverListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile EventDispatcher eventDispatcher;
+
+    private boolean useTargets = false;
+    private boolean useLagrangian = false;
+    private boolean balanceThreads = false;
+    private LeafSearch.Policy leafSearchPolicy = LeafSearch.Policy.ALWAYS;
+    private boolean useBackward = false;
+    private HistoryBound historyBound = null;
+    private boolean useRoundBranching = false;
+
 
     /**
      * Instantiates a new solver considering a specific TUP problem instance.
@@ -68,6 +92,195 @@ public class BranchAndBound {
         return ub;
     }
 
+    /**
+     * Indicates whether the {@link LowerBound} solves the subproblems as
+     * decision problems against targets derived from the current upper bound.
+     *
+     * @return true if targets are used and false otherwise.
+     */
+    public boolean useTargets() {
+        return useTargets;
+    }
+
+    /**
+     * Sets whether the {@link LowerBound} should solve the subproblems as
+     * decision problems against targets derived from the current upper bound.
+     * Subproblems whose target is proven are solved to optimality later, if
+     * time permits.
+     *
+     * @param useTargets true if targets should be used and false otherwise.
+     */
+    public void setUseTargets(boolean useTargets) {
+        this.useTargets = useTargets;
+    }
+
+    /**
+     * Registers a listener to receive the events of the solver (bound and
+     * incumbent improvements and lower bound windows). Events are delivered
+     * asynchronously by a dedicated thread.
+     *
+     * @param listener the listener to be registered.
+     */
+    public void addListener(SolverListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered listener.
+     *
+     * @param listener the listener to be removed.
+     */
+    public void removeListener(SolverListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sends an event to all registered listeners. The event is queued and
+     * delivered by the event dispatcher thread (or dropped if its queue is
+     * full), so that this method never blocks.
+     *
+     * @param event the event, i.e. the method to be called for each listener.
+     */
+    void fireEvent(Consumer<SolverListener> event) {
+        EventDispatcher dispatcher = eventDispatcher;
+        if (dispatcher == null || listeners.isEmpty())
+            return;
+
+        dispatcher.post(() -> {
+            for (SolverListener listener : listeners)
+                event.accept(listener);
+        });
+    }
+
+    /**
+     * Returns whether the {@link LagrangianBound} is executed in parallel with
+     * the other lower bound procedures.
+     *
+     * @return true if the Lagrangian bound is used and false otherwise.
+     */
+    public boolean useLagrangian() {
+        return useLagrangian;
+    }
+
+    /**
+     * Sets whether the {@link LagrangianBound} should be executed in parallel
+     * with the other lower bound procedures. The Lagrangian bound uses one of
+     * the threads reserved for the lower bound calculation.
+     *
+     * @param useLagrangian true if the Lagrangian bound should be used and
+     *                      false otherwise.
+     */
+    public void setUseLagrangian(boolean useLagrangian) {
+        this.useLagrangian = useLagrangian;
+    }
+
+    /**
+     * Returns whether threads are moved between the tree search and the lower
+     * bound calculation while solving (see {@link ThreadBalancer}).
+     *
+     * @return true if threads are balanced and false otherwise.
+     */
+    public boolean balanceThreads() {
+        return balanceThreads;
+    }
+
+    /**
+     * Sets whether threads should be moved between the tree search and the
+     * lower bound calculation while solving (see {@link ThreadBalancer}).
+     *
+     * @param balanceThreads true if threads should be balanced and false
+     *                       otherwise.
+     */
+    public void setBalanceThreads(boolean balanceThreads) {
+        this.balanceThreads = balanceThreads;
+    }
+
+    /**
+     * Returns the policy used to decide whether the leaves of the sub-problems
+     * solved by the {@link LowerBound} are improved with local search.
+     *
+     * @return the leaf local search policy.
+     */
+    public LeafSearch.Policy getLeafSearchPolicy() {
+        return leafSearchPolicy;
+    }
+
+    /**
+     * Sets the policy used to decide whether the leaves of the sub-problems
+     * solved by the {@link LowerBound} are improved with local search.
+     *
+     * @param leafSearchPolicy the leaf local search policy.
+     */
+    public void setLeafSearchPolicy(LeafSearch.Policy leafSearchPolicy) {
+        this.leafSearchPolicy = leafSearchPolicy;
+    }
+
+    /**
+     * Returns whether the {@link LowerBound} may search sub-problems backward
+     * (from the last round), choosing the direction of each sub-problem by
+     * estimating the size of both search trees.
+     *
+     * @return true if backward searches are allowed and false otherwise.
+     */
+    public boolean useBackward() {
+        return useBackward;
+    }
+
+    /**
+     * Sets whether the {@link LowerBound} may search sub-problems backward
+     * (from the last round), choosing the direction of each sub-problem by
+     * estimating the size of both search trees.
+     *
+     * @param useBackward true if backward searches are allowed and false
+     *                    otherwise.
+     */
+    public void setUseBackward(boolean useBackward) {
+        this.useBackward = useBackward;
+    }
+
+    /**
+     * Returns whether the {@link HistoryBound} is used to prune nodes of the
+     * tree (at the depths where it pays off).
+     *
+     * @return true if the history bound is used and false otherwise.
+     */
+    public boolean useHistoryBound() {
+        return historyBound != null;
+    }
+
+    /**
+     * Sets whether the {@link HistoryBound} should be used to prune nodes of
+     * the tree (at the depths where it pays off).
+     *
+     * @param useHistoryBound true if the history bound should be used and
+     *                        false otherwise.
+     */
+    public void setUseHistoryBound(boolean useHistoryBound) {
+        this.historyBound = useHistoryBound ? new HistoryBound(problem) : null;
+    }
+
+    /**
+     * Returns whether each round is branched as a single decision (its
+     * complete assignments, enumerated by cost) instead of umpire by umpire.
+     *
+     * @return true if round-level branching is used and false otherwise.
+     */
+    public boolean useRoundBranching() {
+        return useRoundBranching;
+    }
+
+    /**
+     * Sets whether each round should be branched as a single decision: the
+     * complete assignments of the round are enumerated in non-decreasing order
+     * of cost ({@link MurtyRanking}) until the bound reaches the upper bound.
+     *
+     * @param useRoundBranching true if round-level branching should be used
+     *                          and false otherwise.
+     */
+    public void setUseRoundBranching(boolean useRoundBranching) {
+        this.useRoundBranching = useRoundBranching;
+    }
+
     /**
      * This method simply prints information in a standard format to stdout.
      *
@@ -108,6 +321,7 @@ public class BranchAndBound {
         this.threadExecutor = maxThreads >= 4 ? new ThreadExecutor(maxThreads / 2) : new SequentialExecutor();
         this.futurePool = new FuturePool();
         this.maxTimeMillis = startTimeMillis + timeLimitMillis;
+        this.eventDispatcher = new EventDispatcher("SolverEvents", EVENT_QUEUE_CAPACITY);
 
         System.out.printf("     /----------------------------------------------------------------\\\n");
         System.out.printf("     | %10s | %10s | %10s | %10s | %10s |\n", "Time", "Nodes", "LB", "UB", "Gap");
@@ -115,23 +329,39 @@ public class BranchAndBound {
 
         // running lower bound calculation in parallel
         this.lowerbound = new LowerBound(this);
+        Thread lagrangianThread = null;
+        if (useLagrangian) {
+            lagrangianThread = new Thread(() -> new LagrangianBound(lowerbound).solve(maxTimeMillis));
+            lagrangianThread.setName("LagrangianBound");
+            lagrangianThread.start();
+        }
         Thread lowerBoundThread = new Thread(() -> {
             Thread.currentThread().setName("LowerBound");
-            int lbMaxThreads = maxThreads - threadExecutor.getCorePoolSize() - 1;
+            int lbMaxThreads = maxThreads - threadExecutor.getCorePoolSize() - (useLagrangian ? 2 : 1);
             lowerbound.solve(lbMaxThreads, maxTimeMillis, useTimeWindows);
-            threadExecutor.setCorePoolSize(threadExecutor.getCorePoolSize() + lbMaxThreads + 1);
-            threadExecutor.setMaximumPoolSize(threadExecutor.getCorePoolSize());
+            threadExecutor.setPoolSize(maxThreads - (useLagrangian ? 1 : 0));
         });
         lowerBoundThread.start();
 
+        Thread balancerThread = null;
+        if (balanceThreads) {
+            balancerThread = new Thread(new ThreadBalancer(this, lowerbound, threadExecutor, BALANCE_PERIOD_MILLIS));
+            balancerThread.setName("ThreadBalancer");
+            balancerThread.start();
+        }
+
         // running branch-and-bound (sequential or in a new thread, if any is available)
         if (threadExecutor instanceof SequentialExecutor) {
-            long nNodes = recurseSequential(new SimpleSolution(problem), 0, firstRound + 1);
+            long nNodes = useRoundBranching
+              ? recurseRounds(new SimpleSolution(problem), firstRound + 1, lowerbound.createSnapshot(), true)
+              : recurseSequential(new SimpleSolution(problem), 0, firstRound + 1, lowerbound.createSnapshot());
             assert nodeCounter.get() == nNodes;
         }
         else {
             futurePool.add(threadExecutor.submit(() -> {
-                long nNodes = recurse(new SimpleSolution(problem), 0, firstRound + 1);
+                long nNodes = useRoundBranching
+                  ? recurseRounds(new SimpleSolution(problem), firstRound + 1, lowerbound.createSnapshot(), false)
+                  : recurse(new SimpleSolution(problem), 0, firstRound + 1, lowerbound.createSnapshot());
                 assert nodeCounter.get() == nNodes;
             }));
         }
@@ -143,6 +373,14 @@ public class BranchAndBound {
         // interrupting and finishing lower bound thread
         lowerBoundThread.interrupt();
         lowerBoundThread.join();
+        if (lagrangianThread != null) {
+            lagrangianThread.interrupt();
+            lagrangianThread.join();
+        }
+        if (balancerThread != null) {
+            balancerThread.interrupt();
+            balancerThread.join();
+        }
 
         if (getUB() != Integer.MAX_VALUE) {
             System.out.printf("     |------------|------------|------------|------------|------------|\n");
@@ -150,6 +388,12 @@ public class BranchAndBound {
         }
         System.out.printf("     \\----------------------------------------------------------------/\n");
 
+        // delivering the remaining events (a slow listener cannot hold the solver for long)
+        eventDispatcher.shutdown(1000);
+        if (eventDispatcher.getNDropped() > 0)
+            System.out.printf("Dropped events.....: %d (listeners too slow)\n", eventDispatcher.getNDropped());
+        eventDispatcher = null;
+
         return bestSolution;
     }
 
@@ -161,11 +405,13 @@ public class BranchAndBound {
      * @param x      the current partial solution.
      * @param umpire the current umpire under analysis.
      * @param round  the current round under analysis.
+     * @param bounds the snapshot of the lower bounds used by this worker.
      */
-    private long recurse(SimpleSolution x, int umpire, int round) {
+    private long recurse(SimpleSolution x, int umpire, int round, LowerBound.Snapshot bounds) {
         if (System.currentTimeMillis() >= maxTimeMillis)
             return 0;
 
+        bounds.refresh();
         nodeCounter.incrementAndGet();
         long nodes = 1;
 
@@ -176,17 +422,18 @@ public class BranchAndBound {
             if (round == lastRound && umpire == m - 1) {
                 checkSolution(x);
             }
-            else if (!canPrune(x, umpire, round)) {
+            else if (!canPrune(x, umpire, round, bounds)) {
                 if (canCreateNewThread(node)) {
                     SimpleSolution xCopy = x.clone();
                     futurePool.add(threadExecutor.submit(() -> {
                         Thread.currentThread().setName(String.format("bnb :: recurse(%d)\n", node + 1));
-                        long nNodes = umpire == m - 1 ? recurseSequential(xCopy, 0, round + 1) : recurseSequential(xCopy, umpire + 1, round);
+                        LowerBound.Snapshot boundsCopy = lowerbound.createSnapshot();
+                        long nNodes = umpire == m - 1 ? recurseSequential(xCopy, 0, round + 1, boundsCopy) : recurseSequential(xCopy, umpire + 1, round, boundsCopy);
                         nodeCounter.getAndAdd(nNodes);
                     }));
                 }
                 else {
-                    nodes += umpire == m - 1 ? recurse(x, 0, round + 1) : recurse(x, umpire + 1, round);
+                    nodes += umpire == m - 1 ? recurse(x, 0, round + 1, bounds) : recurse(x, umpire + 1, round, bounds);
                 }
             }
             x.unsetColor(node);
@@ -196,18 +443,20 @@ public class BranchAndBound {
     }
 
     /**
-     * This method does the same as {@link #recurse(SimpleSolution, int, int)},
+     * This method does the same as {@link #recurse(SimpleSolution, int, int, LowerBound.Snapshot)},
      * but ensures that no new Threads are created, i.e. that the method is
      * executed sequentially.
      *
      * @param x      the current partial solution.
      * @param umpire the current umpire under analysis.
      * @param round  the current round under analysis.
+     * @param bounds the snapshot of the lower bounds used by this worker.
      */
-    private long recurseSequential(SimpleSolution x, int umpire, int round) {
+    private long recurseSequential(SimpleSolution x, int umpire, int round, LowerBound.Snapshot bounds) {
         if (System.currentTimeMillis() >= maxTimeMillis)
             return 0;
 
+        bounds.refresh();
         nodeCounter.incrementAndGet();
         long nodes = 1;
 
@@ -217,14 +466,77 @@ public class BranchAndBound {
             x.setColor(node, umpire);
             if (round == lastRound && umpire == m - 1)
                 checkSolution(x);
-            else if (!canPrune(x, umpire, round))
-                nodes += umpire == m - 1 ? recurseSequential(x, 0, round + 1) : recurseSequential(x, umpire + 1, round);
+            else if (!canPrune(x, umpire, round, bounds))
+                nodes += umpire == m - 1 ? recurseSequential(x, 0, round + 1, bounds) : recurseSequential(x, umpire + 1, round, bounds);
             x.unsetColor(node);
         }
 
         return nodes;
     }
 
+    /**
+     * This method executes the round-level branching: each node assigns all
+     * umpires of {@param round}, and its children are the complete
+     * assignments of the round (respecting the constraints considering
+     * solution {@param x}) in non-decreasing order of cost, enumerated with
+     * {@link MurtyRanking} until the cost plus the lower bound of the
+     * remaining rounds reaches the upper bound (as the costs only increase,
+     * the remaining assignments can all be pruned).
+     *
+     * @param x          the current partial solution.
+     * @param round      the current round under analysis.
+     * @param bounds     the snapshot of the lower bounds used by this worker.
+     * @param sequential true if no new threads should be created.
+     */
+    private long recurseRounds(SimpleSolution x, int round, LowerBound.Snapshot bounds, boolean sequential) {
+        if (System.currentTimeMillis() >= maxTimeMillis)
+            return 0;
+
+        bounds.refresh();
+        nodeCounter.incrementAndGet();
+        long nodes = 1;
+
+        int costs[][] = new int[m][m], assignment[] = new int[m];
+        boolean unavailable[] = new boolean[m];
+        for (int umpire = 0; umpire < m; umpire++) {
+            Arrays.fill(unavailable, false);
+            markUnavailableNodes(x, umpire, round, unavailable, m);
+            for (int i = 0; i < m; i++)
+                costs[umpire][i] = unavailable[i] ? ShortestAugmentingPath.FORBIDDEN : problem.distGames[x.colorsRounds[umpire][round - 1]][round * m + i];
+        }
+
+        MurtyRanking ranking = new MurtyRanking(costs);
+        for (long cost = ranking.next(assignment); cost != AssignmentAlgorithm.INFEASIBLE; cost = ranking.next(assignment)) {
+            if (x.cost + cost + bounds.getLB(round) >= ub)
+                break;
+
+            for (int umpire = 0; umpire < m; umpire++)
+                x.setColor(round * m + assignment[umpire], umpire);
+
+            if (round == lastRound) {
+                checkSolution(x);
+            }
+            else if (!canPrune(x, m - 1, round, bounds)) {
+                if (!sequential && round == firstRound + 2 && threadExecutor.hasEmptySlot()) {
+                    SimpleSolution xCopy = x.clone();
+                    futurePool.add(threadExecutor.submit(() -> {
+                        Thread.currentThread().setName(String.format("bnb :: recurseRounds(%d)\n", round + 1));
+                        long nNodes = recurseRounds(xCopy, round + 1, lowerbound.createSnapshot(), true);
+                        nodeCounter.getAndAdd(nNodes);
+                    }));
+                }
+                else {
+                    nodes += recurseRounds(x, round + 1, bounds, sequential);
+                }
+            }
+
+            for (int umpire = m - 1; umpire >= 0; umpire--)
+                x.unsetColor(round * m + assignment[umpire]);
+        }
+
+        return nodes;
+    }
+
 
     /**
      * This method checks if, for a determined node and in the current moment, a
@@ -254,20 +566,22 @@ public class BranchAndBound {
     /**
      * This method checks if the current node can be pruned. For that, the
      * decomposition-based lower bounds is used. If necessary, the partial
-     * matching is calculated to strengthen the bound.
+     * matching is calculated to strengthen the bound, as well as the {@link
+     * HistoryBound} (if it is used).
      *
      * @param x      the current solution.
      * @param umpire the current umpire.
      * @param round  the current round.
+     * @param bounds the snapshot of the lower bounds used by this worker.
      * @return true if current node can be pruned and false otherwise.
      */
-    private boolean canPrune(SimpleSolution x, int umpire, int round) {
-        int lb = lowerbound.getLB(round);
+    private boolean canPrune(SimpleSolution x, int umpire, int round, LowerBound.Snapshot bounds) {
+        int lb = bounds.getLB(round);
 
         if (x.cost + lb >= ub)
             return true;
 
-        if (umpire < m - 1 && x.cost + lb + lowerbound.getLB(round - 1, round) >= ub) {
+        if (umpire < m - 1 && x.cost + lb + bounds.getPairLB(round - 1) >= ub) {
             int prevRound = round - 1;
 
             // used and usedNext keep, respectively, the unconnected games between the current and the next round
@@ -286,12 +600,21 @@ public class BranchAndBound {
                 return true;
         }
 
+        // history-aware matching (to the remaining games of this round or to the games of the next round)
+        if (historyBound != null && historyBound.shouldEvaluate(umpire, round)) {
+            int nextLB = umpire < m - 1 ? lb : bounds.getLB(round + 1);
+            int historyCost = historyBound.getDistance(x, umpire, round);
+            boolean pruned = historyCost == HistoryBound.INFEASIBLE || x.cost + nextLB + historyCost >= ub;
+            historyBound.register(umpire, round, pruned);
+            return pruned;
+        }
+
         return false;
     }
 
     /**
      * Check the solution obtained and run a Local Search on it. If the solution
-     * improves, the method {@link #setUB(Solution, String)} is then called.
+     * improves, the method {@link #setUB(Solution, String, String)} is then called.
      *
      * @param x the solution to be checked.
      */
@@ -304,7 +627,7 @@ public class BranchAndBound {
         sol.calculateScore();
         long obj = sol.getObjectiveCost();
         if (obj < ub)
-            setUB(sol, obj < x.cost ? "* H" : "*");
+            setUB(sol, obj < x.cost ? "local-search" : "branch-and-bound", obj < x.cost ? "* H" : "*");
     }
 
     /**
@@ -327,13 +650,45 @@ public class BranchAndBound {
         for (int u = 0; u < umpire; u++)
             nodesUsed[x.colorsRounds[u][round] % m] = true;
 
+        size = markUnavailableNodes(x, umpire, round, nodesUsed, size);
+        if (size == 0) return new PairInt[0];
+
+        // creating the heap of colors considering the distance -- try shorter first
+        PairInt[] nodes = new PairInt[size];
+        int p = 0;
+        for (int i = 0; i < m; i++) {
+            if (!nodesUsed[i]) {
+                int node = round * m + i;
+                nodes[p++] = new PairInt(node, problem.distGames[x.colorsRounds[umpire][round - 1]][node]);
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> a.second - b.second);
+
+        return nodes;
+    }
+
+    /**
+     * This method marks in {@param nodesUsed} the games of {@param round} that
+     * cannot be assigned to {@param umpire} considering solution {@param x}:
+     * games violating the q1/q2 constraints or the need to visit all venues.
+     * This method has complexity O(m + q1 + q2).
+     *
+     * @param x         the partial solution.
+     * @param umpire    the umpire under analysis.
+     * @param round     the round under analysis.
+     * @param nodesUsed the games already unavailable (updated by the method).
+     * @param size      the number of games still available.
+     * @return the number of games still available (the method stops marking
+     * games once it reaches 0).
+     */
+    private int markUnavailableNodes(SimpleSolution x, int umpire, int round, boolean nodesUsed[], int size) {
         // updating impossible nodes due to constraint of visiting all teams - O(m)
         for (int i = 0; i < m; i++) {
             if (!nodesUsed[i]) {
                 int newLocation = x.colorsLocations[umpire][problem.games[round * m + i][0] - 1] == 0 ? 1 : 0;
                 if (problem.nTeams - (x.colorsLocationsCount[umpire] + newLocation) > problem.nRounds - round) {
                     nodesUsed[i] = true;
-                    if (--size == 0) return new PairInt[0];
+                    if (--size == 0) return 0;
                 }
             }
         }
@@ -348,7 +703,7 @@ public class BranchAndBound {
 
                 if (!nodesUsed[game]) {
                     nodesUsed[game] = true;
-                    if (--size == 0) return new PairInt[0];
+                    if (--size == 0) return 0;
                 }
             }
         }
@@ -361,22 +716,11 @@ public class BranchAndBound {
 
             if (game >= 0 && !nodesUsed[game]) {
                 nodesUsed[game] = true;
-                if (--size == 0) return new PairInt[0];
-            }
-        }
-
-        // creating the heap of colors considering the distance -- try shorter first
-        PairInt[] nodes = new PairInt[size];
-        int p = 0;
-        for (int i = 0; i < m; i++) {
-            if (!nodesUsed[i]) {
-                int node = round * m + i;
-                nodes[p++] = new PairInt(node, problem.distGames[x.colorsRounds[umpire][round - 1]][node]);
+                if (--size == 0) return 0;
             }
         }
-        Arrays.sort(nodes, (a, b) -> a.second - b.second);
 
-        return nodes;
+        return size;
     }
 
     /**
@@ -384,15 +728,18 @@ public class BranchAndBound {
      * best upper bound.
      *
      * @param solution the solution to be analyzed.
+     * @param source   the procedure that found the solution (reported to the
+     *                 listeners).
      * @param extra    some extra information to be printed in the logs,
      *                 regarding the way the current solution was obtained.
      */
-    private synchronized void setUB(Solution solution, String extra) {
+    private synchronized void setUB(Solution solution, String source, String extra) {
         if (solution.getObjectiveCost() < ub) {
             ub = ( int ) solution.getObjectiveCost();
             bestSolution = solution;
 
             printStatus("ub", getNNodes(), lowerbound.getLB(0), ub, extra);
+            fireEvent(listener -> listener.incumbentImproved(solution, source));
 
             // updating nodes priority
             //for (int r = firstRound; r < lastRound; r++) {
@@ -21,7 +21,7 @@ public class BranchAndBoundPartial {
     public final EdgePriority edgePriority;
     public final PartialMatching partialMatching;
 
-    private LowerBound lowerbound;
+    private WindowBounds lowerbound;
 
     private int m;
     private int firstRound;
@@ -33,8 +33,21 @@ public class BranchAndBoundPartial {
     private FuturePool futurePool;
     private AtomicLong nodeCounter = new AtomicLong(0);
 
+    /**
+     * Minimum bound among the nodes left unexplored when the search is
+     * stopped, among the subtrees submitted to other threads and the number
+     * of such subtrees submitted and fully explored; these values provide a
+     * (weaker) lower bound when the search is not completed.
+     */
+    private AtomicInteger frontierLB = new AtomicInteger(Integer.MAX_VALUE);
+    private AtomicInteger submittedLB = new AtomicInteger(Integer.MAX_VALUE);
+    private AtomicLong nSubmitted = new AtomicLong(0), nFinished = new AtomicLong(0);
+
     private volatile int ub;
     private volatile PartialSolution bestSolution = null;
+    private PartialSolution initialSolution = null;
+    private LeafSearch leafSearch = new LeafSearch(LeafSearch.Policy.ALWAYS);
+    private boolean completed = false;
 
 
     /**
@@ -80,12 +93,33 @@ public class BranchAndBoundPartial {
         System.out.printf("%-4s | %9s | %10s | %10s | %10s | %10s |   %s\n", pre, timeStr, nodesStr, lbStr, ubStr, gapStr, extra);
     }
 
+    /**
+     * Sets a (feasible) solution for the sub-problem to be used as initial
+     * incumbent by the next call to {@link #solve(WindowBounds, int,
+     * ThreadExecutor, long)}, if it is cheaper than the initial upper bound.
+     *
+     * @param initialSolution the initial solution.
+     */
+    public void setInitialSolution(PartialSolution initialSolution) {
+        this.initialSolution = initialSolution;
+    }
+
+    /**
+     * Sets the {@link LeafSearch} object that decides whether leaves are
+     * improved with local search (by default, they always are).
+     *
+     * @param leafSearch the leaf search controller.
+     */
+    public void setLeafSearch(LeafSearch leafSearch) {
+        this.leafSearch = leafSearch;
+    }
+
     /**
      * This method actually solves the problem using the partial
      * decomposition-based branch-and-bound.
      *
-     * @param lowerbound       reference to the {@link LowerBound} object that
-     *                         will provide the lower bounds.
+     * @param lowerbound       reference to the object that will provide the
+     *                         lower bounds (usually the {@link LowerBound}).
      * @param ub               initial upper bound.
      * @param lbThreadExecutor the {@link ThreadExecutor} object that will
      *                         control the creation of new threads.
@@ -94,13 +128,20 @@ public class BranchAndBoundPartial {
      *                         this procedure can be executed while
      *                         System.currentTimeMillis() is smaller than
      *                         {@param maxLimitMillis}.
-     * @return the cost of the optimal solution for the subproblem.
+     * @return the optimal solution for the subproblem or null if no solution
+     * with cost smaller than {@param ub} exists (or if the search was not
+     * completed).
      */
-    public PartialSolution solve(LowerBound lowerbound, int ub, ThreadExecutor lbThreadExecutor, long maxTimeMillis) {
+    public PartialSolution solve(WindowBounds lowerbound, int ub, ThreadExecutor lbThreadExecutor, long maxTimeMillis) {
         this.lowerbound = lowerbound;
         this.ub = ub;
         this.maxTimeMillis = maxTimeMillis;
 
+        if (initialSolution != null && initialSolution.getObjectiveCost() < ub) {
+            this.bestSolution = initialSolution;
+            this.ub = ( int ) initialSolution.getObjectiveCost();
+        }
+
         this.threadExecutor = lbThreadExecutor;
         this.futurePool = new FuturePool(lbThreadExecutor);
 
@@ -112,12 +153,89 @@ public class BranchAndBoundPartial {
         // waiting the completion of all tasks
         futurePool.join();
 
-        if (Thread.currentThread().isInterrupted() || System.currentTimeMillis() >= maxTimeMillis)
+        completed = !Thread.currentThread().isInterrupted() && System.currentTimeMillis() < maxTimeMillis;
+        if (!completed)
             return null;
 
         return this.bestSolution;
     }
 
+    /**
+     * Estimates the size of the search tree with Knuth's estimator, i.e. by
+     * averaging the estimates given by random dives (in each dive, the size of
+     * each level is estimated by the product of the numbers of children not
+     * pruned along the dive). This is used to choose the cheapest direction
+     * to search a sub-problem.
+     *
+     * @param lowerbound reference to the object that will provide the lower
+     *                   bounds.
+     * @param ub         the upper bound used for pruning.
+     * @param nDives     the number of random dives.
+     * @param random     the random number generator.
+     * @return the estimated number of nodes of the search tree.
+     */
+    public double estimateTreeSize(WindowBounds lowerbound, int ub, int nDives, Random random) {
+        this.lowerbound = lowerbound;
+        this.ub = ub;
+
+        double sum = 0;
+        for (int dive = 0; dive < nDives; dive++) {
+            SimplePartialSolution x = new SimplePartialSolution(problem, firstRound, lastRound);
+            double levelSize = 1, treeSize = 1;
+            int umpire = 0, round = firstRound + 1;
+
+            while (true) {
+                List<Integer> children = new ArrayList<>();
+                for (PairInt pair : createAvailableNodesArray(x, umpire, round)) {
+                    x.setColor(pair.first, umpire);
+                    if ((round == lastRound && umpire == m - 1) || !canPrune(x, umpire, round))
+                        children.add(pair.first);
+                    x.unsetColor(pair.first);
+                }
+                if (children.isEmpty())
+                    break;
+
+                levelSize *= children.size();
+                treeSize += levelSize;
+                if (round == lastRound && umpire == m - 1)
+                    break;
+
+                x.setColor(children.get(random.nextInt(children.size())), umpire);
+                if (umpire == m - 1) {
+                    umpire = 0;
+                    round++;
+                }
+                else {
+                    umpire++;
+                }
+            }
+            sum += treeSize;
+        }
+
+        return sum / nDives;
+    }
+
+    /**
+     * Gets the lower bound proven by the last call to {@link
+     * #solve(WindowBounds, int, ThreadExecutor, long)}. If the search was
+     * completed, this is either the cost of the optimal solution or, if no
+     * solution cheaper than the initial upper bound exists, the initial upper
+     * bound itself (i.e. the subproblem was solved as a decision problem).
+     * Otherwise, the minimum bound over the open nodes (and the best solution
+     * found) is returned.
+     *
+     * @return the lower bound proven for the subproblem.
+     */
+    public int getLB() {
+        if (completed)
+            return ub;
+
+        // the number of finished subtrees must be read before the frontier
+        boolean allFinished = nFinished.get() == nSubmitted.get();
+        int lb = Math.min(ub, frontierLB.get());
+        return allFinished ? lb : Math.min(lb, submittedLB.get());
+    }
+
 
     /**
      * This method executes the recursive branching to color (assign umpire) the
@@ -128,8 +246,10 @@ public class BranchAndBoundPartial {
      * @param round  the current round under analysis.
      */
     private long recurse(SimplePartialSolution x, int umpire, int round) {
-        if (Thread.currentThread().isInterrupted() || System.currentTimeMillis() >= maxTimeMillis)
+        if (Thread.currentThread().isInterrupted() || System.currentTimeMillis() >= maxTimeMillis) {
+            updateMin(frontierLB, getBound(x, umpire, round));
             return 0;
+        }
 
         long nodes = 1;
 
@@ -144,10 +264,13 @@ public class BranchAndBoundPartial {
 
                 if (canCreateNewThread(node)) {
                     SimplePartialSolution xCopy = x.clone();
+                    updateMin(submittedLB, umpire == m - 1 ? getBound(xCopy, 0, round + 1) : getBound(xCopy, umpire + 1, round));
+                    nSubmitted.incrementAndGet();
                     futurePool.add(threadExecutor.submit(() -> {
                         Thread.currentThread().setName(String.format("lb(%d,%d) :: recurse(%d)\n", firstRound, lastRound, node + 1));
                         long nNodes = umpire == m - 1 ? recurseSequential(xCopy, 0, round + 1) : recurseSequential(xCopy, umpire + 1, round);
                         nodeCounter.getAndAdd(nNodes);
+                        nFinished.incrementAndGet();
                     }));
                 }
                 else {
@@ -170,8 +293,10 @@ public class BranchAndBoundPartial {
      * @param round  the current round under analysis.
      */
     private long recurseSequential(SimplePartialSolution x, int umpire, int round) {
-        if (Thread.currentThread().isInterrupted() || System.currentTimeMillis() >= maxTimeMillis)
+        if (Thread.currentThread().isInterrupted() || System.currentTimeMillis() >= maxTimeMillis) {
+            updateMin(frontierLB, getBound(x, umpire, round));
             return 0;
+        }
 
         long nodes = 1;
 
@@ -226,20 +351,7 @@ public class BranchAndBoundPartial {
             return true;
 
         if (umpire < m - 1) {
-            int prevRound = round - 1;
-
-            // used and usedNext keep, respectively, the unconnected games between the current and the next round
-            boolean used[] = new boolean[m];
-            boolean usedNext[] = new boolean[m];
-
-            for (int i = 0; i <= umpire; i++) {
-                int prevGame = x.colorsRounds[i][prevRound - firstRound] % m;
-                int nextGame = x.colorsRounds[i][round - firstRound] % m;
-                used[prevGame] = true;
-                usedNext[nextGame] = true;
-            }
-
-            int partialMatchingCost = partialMatching.getDistance(prevRound, umpire, used, usedNext);
+            int partialMatchingCost = getPartialMatchingCost(x, umpire, round);
             if (x.cost + lb + partialMatchingCost >= ub)
                 return true;
         }
@@ -248,13 +360,64 @@ public class BranchAndBoundPartial {
     }
 
     /**
-     * Check the solution obtained and run a Local Search on it. If the solution
-     * improves, the method {@link #setUB(PartialSolution, String)} is then
-     * called.
+     * This method returns a lower bound for any solution in the subtree of a
+     * node in which {@param umpire} is the next umpire to be assigned in
+     * {@param round}.
+     *
+     * @param x      the current solution.
+     * @param umpire the next umpire to be assigned.
+     * @param round  the current round.
+     * @return the lower bound for the subtree of the node.
+     */
+    private int getBound(SimplePartialSolution x, int umpire, int round) {
+        if (umpire == 0)
+            return x.cost + lowerbound.getLB(round - 1, lastRound);
+
+        return x.cost + lowerbound.getLB(round, lastRound) + getPartialMatchingCost(x, umpire - 1, round);
+    }
+
+    /**
+     * This method returns the cost of the partial matching between the games
+     * of the previous round and the games of {@param round} which were not
+     * yet connected, i.e. which are not assigned to umpires [0,{@param
+     * umpire}].
+     *
+     * @param x      the current solution.
+     * @param umpire the current umpire.
+     * @param round  the current round.
+     * @return the cost of the partial matching.
+     */
+    private int getPartialMatchingCost(SimplePartialSolution x, int umpire, int round) {
+        int prevRound = round - 1;
+
+        // used and usedNext keep, respectively, the unconnected games between the current and the next round
+        boolean used[] = new boolean[m];
+        boolean usedNext[] = new boolean[m];
+
+        for (int i = 0; i <= umpire; i++) {
+            int prevGame = x.colorsRounds[i][prevRound - firstRound] % m;
+            int nextGame = x.colorsRounds[i][round - firstRound] % m;
+            used[prevGame] = true;
+            usedNext[nextGame] = true;
+        }
+
+        return partialMatching.getDistance(prevRound, umpire, used, usedNext);
+    }
+
+    /**
+     * Check the solution obtained and run a Local Search on it (if allowed by
+     * the {@link LeafSearch} policy). If the solution improves, the method
+     * {@link #setUB(PartialSolution, String)} is then called.
      *
      * @param x the solution to be checked.
      */
     private void checkSolution(SimplePartialSolution x) {
+        if (!leafSearch.shouldSearch()) {
+            if (x.cost < ub)
+                setUB(x.makePartialSolution(), "*");
+            return;
+        }
+
         PartialSolution partialSol = x.makePartialSolution();
 
         //improve bound with steepest descent
@@ -262,6 +425,7 @@ public class BranchAndBoundPartial {
         partialSol = sd.solvePartial(problem, partialSol);
         partialSol.calculateScore();
         long obj = partialSol.getObjectiveCost();
+        leafSearch.register(obj < x.cost && obj < ub);
         if (obj < ub)
             setUB(partialSol, obj < x.cost ? "* H" : "*");
     }
@@ -327,6 +491,17 @@ public class BranchAndBoundPartial {
         return nodes;
     }
 
+    /**
+     * This thread-safe method updates {@param value} to the minimum between
+     * its current value and {@param bound}.
+     *
+     * @param value the value to be updated.
+     * @param bound the new bound.
+     */
+    private static void updateMin(AtomicInteger value, int bound) {
+        value.accumulateAndGet(bound, Math::min);
+    }
+
     /**
      * This thread-safe method updates the current best solution and the current
      * best upper bound.
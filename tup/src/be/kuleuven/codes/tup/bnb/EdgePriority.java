@@ -23,10 +23,14 @@ public class EdgePriority {
     public final Problem problem;
 
     /**
-     * Matrix of [games]x[games] that keeps the priority of each edge
-     * (important: the smaller the number, the higher the priority)
+     * Priority of each edge between games of consecutive rounds (important:
+     * the smaller the number, the higher the priority), stored in one m x m
+     * block per pair of rounds: the edge from game g (of round r) to game g'
+     * (of round r+1) is at position g * m + g' % m. Edges violating the q1
+     * constraint have priority Integer.MAX_VALUE.
      */
-    private final AtomicInteger priority[][];
+    private final AtomicIntegerArray priority;
+    private final int m;
 
     /**
      * Instantiates a new set of priorities for a given {@param problem}.
@@ -35,21 +39,23 @@ public class EdgePriority {
      */
     public EdgePriority(Problem problem) {
         this.problem = problem;
-        this.priority = new AtomicInteger[problem.nGames][problem.nGames];
+        this.m = problem.nUmpires;
+        this.priority = new AtomicIntegerArray((problem.nRounds - 1) * m * m);
 
         populatePriorityMatrix();
     }
 
     /**
      * Returns the priority of the edge connecting game {@param firstGame} to
-     * game {@param secondGame}.
+     * game {@param secondGame}, which must belong to the round following the
+     * one of {@param firstGame}.
      *
      * @param firstGame  the first game.
      * @param secondGame the second game.
      * @return the priority of the edge connecting {@param i} to {@param j}.
      */
     public int get(int firstGame, int secondGame) {
-        return priority[firstGame][secondGame].get();
+        return priority.get(firstGame * m + secondGame % m);
     }
 
     /**
@@ -60,7 +66,7 @@ public class EdgePriority {
      * @param secondGame the second game.
      */
     public void improvePriority(int firstGame, int secondGame) {
-        priority[firstGame][secondGame].addAndGet(-problem.nUmpires);
+        priority.addAndGet(firstGame * m + secondGame % m, -m);
     }
 
     /**
@@ -81,9 +87,12 @@ public class EdgePriority {
                         orders.add(new PairInt(secondGame, problem.distGames[firstGame][secondGame]));
                 }
 
+                for (int j = 0; j < problem.nUmpires; j++)
+                    this.priority.set(firstGame * m + j, Integer.MAX_VALUE);
+
                 int priority = 0;
                 while (!orders.isEmpty()) {
-                    this.priority[firstGame][orders.poll().first] = new AtomicInteger(priority++);
+                    this.priority.set(firstGame * m + orders.poll().first % m, priority++);
                 }
             }
         }
@@ -0,0 +1,293 @@
+package be.kuleuven.codes.tup.bnb;
+
+import be.kuleuven.codes.tup.heuristic.assignment.*;
+import be.kuleuven.codes.tup.model.*;
+import be.kuleuven.codes.tup.model.solution.*;
+
+import java.util.*;
+
+/**
+ * This class computes a node bound for the {@link BranchAndBound} that uses
+ * the history of the umpires. Once all umpires are assigned in a round, the
+ * games each umpire may take in the next round are known exactly (q1/q2
+ * constraints and the need to visit all venues, as in the branching), so the
+ * matching between umpires and the games of the next round, with these
+ * assignments forbidden, bounds the cost of the next round. This is stronger
+ * than the {@link PartialMatching}, which only forbids assignments violating
+ * the constraints between consecutive rounds.
+ * <p>
+ * Notice that a multi-round flow from the positions of the umpires would not
+ * be stronger: the rounds after the next one are complete layers, so such a
+ * flow decomposes into independent matchings, which are already dominated by
+ * the window bounds.
+ * <p>
+ * The matching is maintained incrementally along the path of the search:
+ * each thread keeps the matching solved at the last round boundary and a
+ * stack with one matching per umpire assigned in the next round (each
+ * assignment removes one row and one column with {@link
+ * IncrementalAssignment#remove(int, int)}, in O(m^2)). Both are validated
+ * lazily against the current solution: the cost matrix of the boundary
+ * matching is recomputed from the history of the umpires (O(m^2 + m q1)) and
+ * the matching is solved again only if it changed, since the same games at
+ * the boundary may be reached by different histories.
+ * <p>
+ * The bound is only evaluated at depths where it pays off: each thread
+ * estimates, for each depth, the size of the subtrees (ratio between the
+ * nodes visited at the deeper levels and at the depth) and the fraction of
+ * evaluations that prune nodes not pruned by the other bounds; the bound is
+ * evaluated when the expected number of nodes saved by an evaluation pays
+ * for its cost (and, otherwise, only for a fraction of the nodes).
+ *
+ * @author Tulio Toffolo
+ */
+public class HistoryBound {
+
+    /**
+     * Value returned when the umpires cannot be matched to the games of the
+     * next round.
+     */
+    public static final int INFEASIBLE = Integer.MAX_VALUE;
+
+    /**
+     * Number of evaluations at a depth before its estimates are considered,
+     * number of visits between updates of the decisions, number of visits
+     * after which the counters are halved, frequency of the evaluations done
+     * at unprofitable depths and (estimated) cost of an evaluation, in nodes.
+     */
+    private static final int WARMUP_EVALUATIONS = 64;
+    private static final int REFRESH_VISITS = 4096;
+    private static final long HISTORY_VISITS = 1 << 22;
+    private static final int PROBE_FREQUENCY = 16;
+    private static final double EVALUATION_COST = 4;
+
+    private static final long FORBIDDEN_COST = 1L << 32;
+
+    public final Problem problem;
+
+    private final int m;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+
+    /**
+     * Instantiates a new history bound calculator for a problem.
+     *
+     * @param problem the TUP problem instance.
+     */
+    public HistoryBound(Problem problem) {
+        this.problem = problem;
+        this.m = problem.nUmpires;
+    }
+
+    /**
+     * Registers a visit to a node with {@param umpire} assigned in {@param
+     * round} and returns whether the bound should be evaluated for it.
+     *
+     * @param umpire the last umpire assigned.
+     * @param round  the current round.
+     * @return true if the bound should be evaluated and false otherwise.
+     */
+    public boolean shouldEvaluate(int umpire, int round) {
+        Workspace workspace = workspaces.get();
+        int depth = round * m + umpire;
+
+        workspace.visits[depth]++;
+        if (++workspace.nVisits % REFRESH_VISITS == 0)
+            workspace.refresh();
+
+        return workspace.profitable[depth] || workspace.visits[depth] % PROBE_FREQUENCY == 0;
+    }
+
+    /**
+     * Registers the result of an evaluation of the bound.
+     *
+     * @param umpire the last umpire assigned.
+     * @param round  the current round.
+     * @param pruned true if the node was pruned by the bound and false
+     *               otherwise.
+     */
+    public void register(int umpire, int round, boolean pruned) {
+        Workspace workspace = workspaces.get();
+        int depth = round * m + umpire;
+
+        workspace.evaluations[depth]++;
+        if (pruned)
+            workspace.prunes[depth]++;
+    }
+
+    /**
+     * Returns the cost of matching the umpires not yet assigned in {@param
+     * round} to the remaining games of {@param round} or, if all umpires are
+     * assigned ({@param umpire} = m-1), the cost of matching all umpires to
+     * the games of the next round.
+     *
+     * @param x      the current solution.
+     * @param umpire the last umpire assigned in {@param round}.
+     * @param round  the current round.
+     * @return the cost of the matching or {@link #INFEASIBLE} if there is no
+     * feasible matching.
+     */
+    public int getDistance(SimpleSolution x, int umpire, int round) {
+        Workspace workspace = workspaces.get();
+        if (umpire == m - 1) {
+            workspace.build(x, round, 0);
+            return workspace.getDistance(workspace.root);
+        }
+
+        // validating the boundary matching and the stack against the current solution
+        int boundary = round - 1;
+        workspace.fillCosts(x, boundary, umpire + 1, workspace.candidateCost);
+        if (!workspace.isRootValid(boundary))
+            workspace.build(x, boundary, umpire + 1);
+
+        int depth = 0;
+        while (depth < workspace.nLevels && depth < umpire && workspace.levelGames[depth] == x.colorsRounds[depth][round])
+            depth++;
+
+        for (int u = depth; u <= umpire; u++) {
+            workspace.levels[u].copyFrom(u == 0 ? workspace.root : workspace.levels[u - 1]);
+            workspace.levels[u].remove(u, x.colorsRounds[u][round] % m);
+            workspace.levelGames[u] = x.colorsRounds[u][round];
+        }
+        workspace.nLevels = umpire + 1;
+
+        return workspace.getDistance(workspace.levels[umpire]);
+    }
+
+    /**
+     * Matchings and statistics of one thread.
+     */
+    private class Workspace {
+        final long cost[][] = new long[m][m], candidateCost[][] = new long[m][m];
+        final boolean forbidden[] = new boolean[m];
+        final IncrementalAssignment root = new IncrementalAssignment(cost);
+        final IncrementalAssignment levels[] = new IncrementalAssignment[m];
+
+        // the boundary round and the games of the levels of the stack
+        int rootRound = -1, nLevels = 0;
+        final int levelGames[] = new int[m];
+
+        final long visits[], evaluations[], prunes[];
+        final boolean profitable[];
+        long nVisits = 0;
+
+        Workspace() {
+            for (int u = 0; u < m; u++)
+                levels[u] = new IncrementalAssignment(cost);
+
+            int nDepths = problem.nRounds * m;
+            visits = new long[nDepths];
+            evaluations = new long[nDepths];
+            prunes = new long[nDepths];
+            profitable = new boolean[nDepths];
+            Arrays.fill(profitable, true);
+        }
+
+        /**
+         * Returns whether the boundary matching was solved for round {@param
+         * boundary} with the costs in candidateCost (filled by {@link
+         * #fillCosts(SimpleSolution, int, int, long[][])}).
+         */
+        boolean isRootValid(int boundary) {
+            if (rootRound != boundary)
+                return false;
+            for (int u = 0; u < m; u++)
+                if (!Arrays.equals(cost[u], candidateCost[u]))
+                    return false;
+            return true;
+        }
+
+        /**
+         * Solves the matching between the umpires (at their games of round
+         * {@param boundary}) and the games of the next round; the first
+         * {@param nAssigned} umpires are already assigned in the next round
+         * of {@param x}, so their assignments are ignored.
+         */
+        void build(SimpleSolution x, int boundary, int nAssigned) {
+            fillCosts(x, boundary, nAssigned, cost);
+            root.solve();
+            rootRound = boundary;
+            nLevels = 0;
+        }
+
+        /**
+         * Computes into {@param target} the cost matrix of the boundary
+         * matching of round {@param boundary}, which depends on the games of
+         * the umpires in rounds [boundary-q1+2,boundary] and on the locations
+         * they visited up to the boundary.
+         */
+        void fillCosts(SimpleSolution x, int boundary, int nAssigned, long target[][]) {
+            int round = boundary + 1;
+            int rq2 = Math.max(0, round - problem.q2 + 1), rq1 = Math.max(0, round - problem.q1 + 1);
+
+            for (int u = 0; u < m; u++) {
+                // locations visited by the umpire up to the boundary round
+                int skipLocation = -1, nLocations = x.colorsLocationsCount[u];
+                if (u < nAssigned) {
+                    int location = problem.games[x.colorsRounds[u][round]][0] - 1;
+                    if (x.colorsLocations[u][location] == 1) {
+                        skipLocation = location;
+                        nLocations--;
+                    }
+                }
+
+                // games forbidden by the need to visit all locations - O(m)
+                for (int i = 0; i < m; i++) {
+                    int location = problem.games[round * m + i][0] - 1;
+                    int newLocation = location == skipLocation || x.colorsLocations[u][location] == 0 ? 1 : 0;
+                    forbidden[i] = problem.nTeams - (nLocations + newLocation) > problem.nRounds - round;
+                }
+
+                // games forbidden by the q2 constraint - O(q2)
+                for (int r = rq2; r < round; r++) {
+                    for (int team : problem.games[x.colorsRounds[u][r]]) {
+                        int game = problem.opponents[round][team - 1] > 0
+                          ? problem.roundHomeTeamToGame[round][team - 1] % m
+                          : problem.roundHomeTeamToGame[round][-problem.opponents[round][team - 1] - 1] % m;
+                        forbidden[game] = true;
+                    }
+                }
+
+                // games forbidden by the q1 constraint - O(q1-q2)
+                for (int r = rq1; r < rq2; r++) {
+                    int game = problem.roundHomeTeamToGame[round][problem.games[x.colorsRounds[u][r]][0] - 1] % m;
+                    if (game >= 0)
+                        forbidden[game] = true;
+                }
+
+                for (int i = 0; i < m; i++)
+                    target[u][i] = forbidden[i] ? FORBIDDEN_COST : problem.distGames[x.colorsRounds[u][boundary]][round * m + i];
+            }
+        }
+
+        int getDistance(IncrementalAssignment matching) {
+            long distance = matching.getWeight(cost);
+            return distance >= FORBIDDEN_COST ? INFEASIBLE : ( int ) distance;
+        }
+
+        /**
+         * Updates the decisions of the depths: the bound is profitable at a
+         * depth if the expected number of nodes it saves per evaluation (the
+         * fraction of evaluations that prune times the estimated size of the
+         * subtrees) is at least the cost of an evaluation.
+         */
+        void refresh() {
+            long deeperVisits = 0;
+            for (int depth = visits.length - 1; depth >= 0; depth--) {
+                deeperVisits += visits[depth];
+                if (evaluations[depth] >= WARMUP_EVALUATIONS && visits[depth] > 0) {
+                    double subtreeSize = deeperVisits / ( double ) visits[depth];
+                    profitable[depth] = prunes[depth] * subtreeSize >= EVALUATION_COST * evaluations[depth];
+                }
+            }
+
+            if (nVisits >= HISTORY_VISITS) {
+                nVisits /= 2;
+                for (int depth = 0; depth < visits.length; depth++) {
+                    visits[depth] /= 2;
+                    evaluations[depth] /= 2;
+                    prunes[depth] /= 2;
+                }
+            }
+        }
+    }
+}
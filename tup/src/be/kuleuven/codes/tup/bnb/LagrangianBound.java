@@ -0,0 +1,311 @@
+package be.kuleuven.codes.tup.bnb;
+
+import be.kuleuven.codes.tup.heuristic.assignment.*;
+import be.kuleuven.codes.tup.model.*;
+import be.kuleuven.codes.tup.useful.*;
+
+import java.util.*;
+
+/**
+ * This class implements a Lagrangian relaxation lower bound for the TUP. The
+ * relaxation considers the layered graph of games (without the umpire index),
+ * in which the edges selected between each pair of consecutive rounds form a
+ * perfect matching. The q1/q2 constraints involving consecutive rounds are
+ * kept as forbidden edges, while the ones involving rounds r and r+2 are
+ * written as x(g1,g2) + x(g2,g3) <= 1, for every pair of conflicting games g1
+ * and g3, and relaxed with Lagrange multipliers. The relaxed problem
+ * decomposes into one assignment problem per pair of consecutive rounds,
+ * which are solved with the {@link ShortestAugmentingPath} algorithm, and the
+ * multipliers are updated with subgradient steps.
+ * <p>
+ * Note that the constraint of visiting all venues cannot be written without
+ * the umpire index; it is therefore dropped by the relaxation.
+ *
+ * @author Tulio Toffolo
+ */
+public class LagrangianBound {
+
+    /**
+     * Number of subgradient iterations between two evaluations of the bounds
+     * of all time windows.
+     */
+    private static final int WINDOWS_FREQUENCY = 5;
+
+    /**
+     * Number of iterations without improvement before the step size is
+     * halved and the minimum step size factor.
+     */
+    private static final int MAX_NO_IMPROVEMENT = 20;
+    private static final double MIN_THETA = 1e-3;
+
+    public final LowerBound lowerbound;
+    public final Problem problem;
+
+    private final int m, nRounds;
+
+    /**
+     * feasible[r][i][j] indicates whether the i-th game of round r and the
+     * j-th game of round r+1 can be assigned to the same umpire.
+     */
+    private final boolean feasible[][][];
+
+    /**
+     * conflicts[r] keeps the pairs (g1,g3) of games of rounds r and r+2 (with
+     * indexes relative to the rounds) that cannot be assigned to the same
+     * umpire, while multipliers[r][k*m + g2] keeps the multiplier of the
+     * constraint x(g1,g2) + x(g2,g3) <= 1 for the k-th pair.
+     */
+    private final int conflicts[][][];
+    private final double multipliers[][];
+
+    private final ShortestAugmentingPath assignmentAlgorithm = new ShortestAugmentingPath();
+
+
+    /**
+     * Instantiates a new Lagrangian lower bound provider, which writes its
+     * bounds into {@param lowerbound}.
+     *
+     * @param lowerbound the {@link LowerBound} object that stores the bounds.
+     */
+    public LagrangianBound(LowerBound lowerbound) {
+        this.lowerbound = lowerbound;
+        this.problem = lowerbound.problem;
+        this.m = problem.nUmpires;
+        this.nRounds = problem.nRounds;
+
+        CompatibilityIndex index = problem.getCompatibilityIndex();
+        feasible = new boolean[nRounds - 1][m][m];
+        for (int r = 0; r < nRounds - 1; r++)
+            for (int i = 0; i < m; i++)
+                for (int j = 0; j < m; j++)
+                    feasible[r][i][j] = index.isCompatible(r, i, j);
+
+        conflicts = new int[Math.max(0, nRounds - 2)][][];
+        multipliers = new double[conflicts.length][];
+        for (int r = 0; r < conflicts.length; r++) {
+            List<int[]> pairs = new ArrayList<>();
+            for (int i = 0; i < m; i++)
+                for (int j = 0; j < m; j++)
+                    if (isConflict(r * m + i, (r + 2) * m + j, problem.q1 > 2, problem.q2 > 2))
+                        pairs.add(new int[]{ i, j });
+
+            conflicts[r] = pairs.toArray(new int[pairs.size()][]);
+            multipliers[r] = new double[conflicts[r].length * m];
+        }
+    }
+
+    /**
+     * Executes the subgradient optimization of the Lagrange multipliers. The
+     * bounds of all time windows are periodically evaluated with the current
+     * multipliers and written into the {@link LowerBound} object.
+     *
+     * @param maxTimeMillis the maximum time (in milliseconds) in which the
+     *                      procedure can still be running.
+     */
+    public void solve(long maxTimeMillis) {
+        int nMultipliers = 0;
+        for (double[] roundMultipliers : multipliers)
+            nMultipliers += roundMultipliers.length;
+        if (nMultipliers == 0)
+            return;
+
+        double theta = 2.0;
+        long bestL = Long.MIN_VALUE;
+        int nNoImprovement = 0;
+
+        int assignment[][] = new int[nRounds - 1][m];
+        for (int iter = 0; theta > MIN_THETA; iter++) {
+            if (Thread.currentThread().isInterrupted() || System.currentTimeMillis() >= maxTimeMillis)
+                break;
+
+            int pi[][] = roundMultipliers();
+
+            // evaluating the Lagrangian function
+            long L = 0;
+            for (int r = 0; r < nRounds - 1; r++) {
+                int cost = solveAssignment(r, pi, true, true, assignment[r]);
+                if (cost < 0) return;
+                L += cost;
+            }
+            for (int r = 0; r < pi.length; r++)
+                for (int value : pi[r])
+                    L -= value;
+
+            if (L > bestL) {
+                bestL = L;
+                nNoImprovement = 0;
+            }
+            else if (++nNoImprovement >= MAX_NO_IMPROVEMENT) {
+                theta /= 2;
+                nNoImprovement = 0;
+            }
+
+            if (iter % WINDOWS_FREQUENCY == 0 && !updateBounds(pi))
+                return;
+
+            // computing the subgradient
+            double norm = 0;
+            int subgradient[][] = new int[multipliers.length][];
+            for (int r = 0; r < multipliers.length; r++) {
+                subgradient[r] = new int[multipliers[r].length];
+                for (int k = 0; k < conflicts[r].length; k++) {
+                    int g1 = conflicts[r][k][0], g3 = conflicts[r][k][1];
+                    for (int g2 = 0; g2 < m; g2++) {
+                        if (!feasible[r][g1][g2] || !feasible[r + 1][g2][g3])
+                            continue;
+
+                        int s = (assignment[r][g1] == g2 ? 1 : 0) + (assignment[r + 1][g2] == g3 ? 1 : 0) - 1;
+                        if (s < 0 && multipliers[r][k * m + g2] <= 0)
+                            continue;
+
+                        subgradient[r][k * m + g2] = s;
+                        norm += s * s;
+                    }
+                }
+            }
+            if (norm == 0)
+                break;
+
+            // updating the multipliers with the Polyak step size
+            int ub = lowerbound.solver.getUB();
+            double target = ub < Integer.MAX_VALUE ? ub : 1.05 * Math.max(L, 1);
+            if (target <= L)
+                break;
+
+            double step = theta * (target - L) / norm;
+            for (int r = 0; r < multipliers.length; r++)
+                for (int i = 0; i < multipliers[r].length; i++)
+                    multipliers[r][i] = Math.max(0, multipliers[r][i] + step * subgradient[r][i]);
+        }
+
+        updateBounds(roundMultipliers());
+    }
+
+
+    /**
+     * Evaluates the Lagrangian bound of every time window [a,b] using the
+     * multipliers {@param pi} of the constraints within the window and writes
+     * the improved bounds into the {@link LowerBound} object. For this, three
+     * assignment problems are solved for each pair of rounds: with the
+     * multipliers of the constraints on both sides, without the ones on the
+     * left (first pair of a window) and without the ones on the right (last
+     * pair of a window).
+     *
+     * @param pi the (integer) multipliers.
+     * @return false if some assignment problem could not be solved and true
+     * otherwise.
+     */
+    private boolean updateBounds(int pi[][]) {
+        long full[] = new long[nRounds - 1], noLeft[] = new long[nRounds - 1], noRight[] = new long[nRounds - 1];
+        int assignment[] = new int[m];
+        for (int r = 0; r < nRounds - 1; r++) {
+            full[r] = solveAssignment(r, pi, true, true, assignment);
+            noLeft[r] = r > 0 ? solveAssignment(r, pi, false, true, assignment) : full[r];
+            noRight[r] = r < nRounds - 2 ? solveAssignment(r, pi, true, false, assignment) : full[r];
+            if (full[r] < 0 || noLeft[r] < 0 || noRight[r] < 0)
+                return false;
+        }
+
+        // prefix sums of the assignment costs and of the multipliers of each triple of rounds
+        long prefixFull[] = new long[nRounds], prefixPi[] = new long[nRounds - 1];
+        for (int r = 0; r < nRounds - 1; r++)
+            prefixFull[r + 1] = prefixFull[r] + full[r];
+        for (int t = 0; t < pi.length; t++) {
+            prefixPi[t + 1] = prefixPi[t];
+            for (int value : pi[t])
+                prefixPi[t + 1] += value;
+        }
+
+        int nImproved = 0;
+        for (int a = 0; a < nRounds - 2; a++) {
+            for (int b = a + 2; b < nRounds; b++) {
+                long L = noLeft[a] + prefixFull[b - 1] - prefixFull[a + 1] + noRight[b - 1] - (prefixPi[b - 1] - prefixPi[a]);
+                if (L > 0 && L < Integer.MAX_VALUE && lowerbound.improveLB(a, b, ( int ) L))
+                    nImproved++;
+            }
+        }
+
+        if (nImproved > 0) {
+            String info = String.format("# lagrangian: lb improved in %d windows", nImproved);
+            lowerbound.solver.printStatus("lb", lowerbound.solver.getNNodes(), lowerbound.getLB(0), lowerbound.solver.getUB(), info);
+        }
+        return true;
+    }
+
+    /**
+     * Solves the assignment problem between rounds {@param round} and
+     * {@param round}+1 with edge costs given by the distances plus the
+     * multipliers of the relaxed constraints.
+     *
+     * @param round      the first round of the assignment problem.
+     * @param pi         the (integer) multipliers.
+     * @param left       true if the multipliers of the constraints involving
+     *                   rounds [round-1,round+1] should be considered.
+     * @param right      true if the multipliers of the constraints involving
+     *                   rounds [round,round+2] should be considered.
+     * @param assignment array that receives the game of round+1 assigned to
+     *                   each game of round.
+     * @return the cost of the assignment or -1 if it could not be solved.
+     */
+    private int solveAssignment(int round, int pi[][], boolean left, boolean right, int assignment[]) {
+        int costMatrix[][] = new int[m][m];
+        for (int i = 0; i < m; i++)
+            Kernels.INSTANCE.select(costMatrix[i], 0, problem.distGames[round * m + i], (round + 1) * m, feasible[round][i], 0, ShortestAugmentingPath.FORBIDDEN, m);
+
+        if (right && round < conflicts.length) {
+            for (int k = 0; k < conflicts[round].length; k++) {
+                int g1 = conflicts[round][k][0];
+                for (int g2 = 0; g2 < m; g2++)
+                    if (feasible[round][g1][g2])
+                        costMatrix[g1][g2] += pi[round][k * m + g2];
+            }
+        }
+        if (left && round > 0) {
+            for (int k = 0; k < conflicts[round - 1].length; k++) {
+                int g2 = conflicts[round - 1][k][1];
+                for (int g1 = 0; g1 < m; g1++)
+                    if (feasible[round][g1][g2])
+                        costMatrix[g1][g2] += pi[round - 1][k * m + g1];
+            }
+        }
+
+        long cost = assignmentAlgorithm.solve(costMatrix, m, m, assignment);
+        return cost == ShortestAugmentingPath.INFEASIBLE ? -1 : ( int ) cost;
+    }
+
+    /**
+     * Returns the multipliers rounded to integer values, so that the bounds
+     * are computed without floating point errors.
+     *
+     * @return the rounded multipliers.
+     */
+    private int[][] roundMultipliers() {
+        int pi[][] = new int[multipliers.length][];
+        for (int r = 0; r < multipliers.length; r++) {
+            pi[r] = new int[multipliers[r].length];
+            for (int i = 0; i < multipliers[r].length; i++)
+                pi[r][i] = ( int ) Math.round(multipliers[r][i]);
+        }
+        return pi;
+    }
+
+    /**
+     * Checks whether games {@param g1} and {@param g2} conflict, i.e. whether
+     * they share the venue (if {@param home} is true) or any team (if {@param
+     * teams} is true).
+     *
+     * @param g1    the first game.
+     * @param g2    the second game.
+     * @param home  true if venues should be checked.
+     * @param teams true if teams should be checked.
+     * @return true if the games conflict and false otherwise.
+     */
+    private boolean isConflict(int g1, int g2, boolean home, boolean teams) {
+        int games[][] = problem.games;
+        if (teams && (games[g1][0] == games[g2][0] || games[g1][1] == games[g2][1]
+          || games[g1][0] == games[g2][1] || games[g1][1] == games[g2][0]))
+            return true;
+
+        return home && games[g1][0] == games[g2][0];
+    }
+}
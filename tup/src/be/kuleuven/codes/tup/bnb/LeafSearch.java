@@ -0,0 +1,89 @@
+package be.kuleuven.codes.tup.bnb;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class decides whether the leaves of the {@link BranchAndBoundPartial}
+ * are improved with local search. Since the window search is exact, the local
+ * search is only useful when it finds improving solutions earlier than the
+ * search itself; with the adaptive policy, the success rate of the recent
+ * local searches is tracked (counters are halved periodically) and, when it
+ * is low, only a fraction of the leaves is still improved (to detect when it
+ * becomes useful again). A single object is shared by all window searches.
+ *
+ * @author Tulio Toffolo
+ */
+public class LeafSearch {
+
+    /**
+     * The available policies: always, never or adaptive (by success rate).
+     */
+    public enum Policy {
+        ALWAYS, NEVER, ADAPTIVE
+    }
+
+    /**
+     * Number of searches before the success rate is considered, number of
+     * searches after which the counters are halved, minimum success rate and
+     * frequency of the leaves still improved when the rate is low.
+     */
+    private static final int WARMUP_SEARCHES = 64;
+    private static final int HISTORY_SEARCHES = 1024;
+    private static final double MIN_SUCCESS_RATE = 0.05;
+    private static final int PROBE_FREQUENCY = 16;
+
+    public final Policy policy;
+
+    private final AtomicLong nLeaves = new AtomicLong(0);
+    private long nSearches = 0, nImprovements = 0;
+
+
+    /**
+     * Instantiates a new leaf search controller.
+     *
+     * @param policy the policy to be used.
+     */
+    public LeafSearch(Policy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Returns whether the local search should be executed for the current
+     * leaf.
+     *
+     * @return true if the local search should be executed and false
+     * otherwise.
+     */
+    public boolean shouldSearch() {
+        switch (policy) {
+            case ALWAYS:
+                return true;
+            case NEVER:
+                return false;
+            default:
+                long leaf = nLeaves.incrementAndGet();
+                synchronized (this) {
+                    if (nSearches < WARMUP_SEARCHES || nImprovements >= MIN_SUCCESS_RATE * nSearches)
+                        return true;
+                }
+                return leaf % PROBE_FREQUENCY == 0;
+        }
+    }
+
+    /**
+     * Registers the result of a local search.
+     *
+     * @param improved true if the local search improved the leaf solution
+     *                 (and the upper bound) and false otherwise.
+     */
+    public synchronized void register(boolean improved) {
+        nSearches++;
+        if (improved)
+            nImprovements++;
+
+        if (nSearches >= HISTORY_SEARCHES) {
+            nSearches /= 2;
+            nImprovements /= 2;
+        }
+    }
+}
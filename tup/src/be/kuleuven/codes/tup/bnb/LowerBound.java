@@ -12,7 +12,26 @@ import java.util.*;
  *
  * @author Tulio Toffolo
  */
-public class LowerBound {
+public class LowerBound implements WindowBounds {
+
+    /**
+     * Number of nodes between two checks of the epoch of the bounds by a
+     * {@link Snapshot}.
+     */
+    private static final int SNAPSHOT_REFRESH_NODES = 1024;
+
+    /**
+     * Number of random dives used to estimate the size of the search trees
+     * when choosing the direction of the search of a sub-problem.
+     */
+    private static final int PROBE_DIVES = 32;
+
+    /**
+     * A sub-problem is only searched backward if its estimated tree is this
+     * many times smaller, since the estimates are noisy and the structures of
+     * the reversed problem (e.g. memoized partial matchings) start empty.
+     */
+    private static final double BACKWARD_FACTOR = 4.0;
 
     public final BranchAndBound solver;
     public final Problem problem;
@@ -20,8 +39,34 @@ public class LowerBound {
     public final PartialMatching partialMatching;
 
     private final Bounds bounds;
+    private final boolean useTargets;
+    private final LeafSearch leafSearch;
+    private final ThreadLocal<ShortestAugmentingPath> assignmentAlgorithms = ThreadLocal.withInitial(ShortestAugmentingPath::new);
 
-    private ThreadExecutor threadExecutor;
+    /**
+     * The reversed problem (and its structures) used to search sub-problems
+     * backward, i.e. from the last round with the last round fixed, and the
+     * view of the bounds for the reversed problem.
+     */
+    private final Problem reversedProblem;
+    private final EdgePriority reversedEdgePriority;
+    private final PartialMatching reversedPartialMatching;
+    private final WindowBounds reversedBounds;
+    private final Random random = new Random(0);
+
+    private volatile ThreadExecutor threadExecutor;
+    private List<int[]> deferredWindows = new LinkedList<>();
+
+    /**
+     * Optimal solution of the last window solved that ends at each round (or
+     * null if it was not solved to optimality): windows with the same last
+     * round are solved by decreasing first round, so only this solution can
+     * still be extended by one round. Solutions are removed once extended.
+     */
+    private final PartialSolution nestedSolutions[];
+
+    private double sumImprovementRatio = 0;
+    private int nImprovementRatio = 0;
 
     /**
      * Instantiates a new lower bound calculator for the branch-and-bound solver
@@ -37,16 +82,54 @@ public class LowerBound {
         this.edgePriority = solver.edgePriority;
         this.partialMatching = solver.partialMatching;
         this.bounds = new Bounds(problem.nRounds);
+        this.nestedSolutions = new PartialSolution[problem.nRounds];
+        this.useTargets = solver.useTargets();
+        this.leafSearch = new LeafSearch(solver.getLeafSearchPolicy());
+
+        if (solver.useBackward()) {
+            this.reversedProblem = problem.reverse();
+            this.reversedEdgePriority = new EdgePriority(reversedProblem);
+            this.reversedPartialMatching = new PartialMatching(reversedProblem);
+            this.reversedBounds = (first, last) -> getLB(problem.nRounds - 1 - last, problem.nRounds - 1 - first);
+        }
+        else {
+            this.reversedProblem = null;
+            this.reversedEdgePriority = null;
+            this.reversedPartialMatching = null;
+            this.reversedBounds = null;
+        }
 
         // initializing the lower bound with the solutions of the simple 2-round problems
+        int matchings[] = calculateMatchings();
         for (int i = this.problem.nRounds - 2; i >= 0; i--) {
-            bounds.matching[i] = calculateMatching(i);
+            bounds.matching[i] = matchings[i];
             bounds.set(i, i + 1, bounds.matching[i]);
         }
 
         solver.printStatus("lb", solver.getNNodes(), getLB(0), solver.getUB(), "");
     }
 
+    /**
+     * Returns the executor used by the lower bound calculation (null if the
+     * calculation has not started yet).
+     *
+     * @return the executor used by the lower bound calculation.
+     */
+    public ThreadExecutor getThreadExecutor() {
+        return threadExecutor;
+    }
+
+    /**
+     * Creates a private snapshot of the bounds used by the tree search, i.e.
+     * the bounds from each round till the last round and the bounds of each
+     * pair of consecutive rounds.
+     *
+     * @return a new snapshot of the bounds.
+     */
+    public Snapshot createSnapshot() {
+        return new Snapshot();
+    }
+
     /**
      * Gets the current best lower bound for the {@param firstRound} until the
      * last round of the problem.
@@ -72,6 +155,27 @@ public class LowerBound {
         return bounds.get(firstRound, lastRound);
     }
 
+    /**
+     * Improves the lower bound for the sub-problem given by rounds
+     * [{@param firstRound},{@param lastRound}], propagating it to all other
+     * bounds. This method is thread-safe and can be used by other lower
+     * bound providers.
+     *
+     * @param firstRound the first round.
+     * @param lastRound  the last round.
+     * @param lb         the new lower bound for the sub-problem.
+     * @return true if the bound was improved and false otherwise.
+     */
+    public boolean improveLB(int firstRound, int lastRound, int lb) {
+        int oldLB = bounds.get(firstRound, lastRound);
+        if (lb <= oldLB)
+            return false;
+
+        bounds.set(firstRound, lastRound, lb);
+        solver.fireEvent(listener -> listener.boundImproved(firstRound, lastRound, oldLB, lb));
+        return true;
+    }
+
     /**
      * Executes the lower bounds calculation.
      *
@@ -133,6 +237,12 @@ public class LowerBound {
             }
         }
 
+        // windows only proven against a target are now solved to optimality, if time permits
+        while (!deferredWindows.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            int window[] = deferredWindows.remove(0);
+            solveSubproblem(maxLimitMillis, window[0], window[1], Integer.MAX_VALUE);
+        }
+
         if (!Thread.currentThread().isInterrupted())
             futurePool.addAll(threadExecutor.submitAll(threads));
         futurePool.join();
@@ -140,7 +250,10 @@ public class LowerBound {
     }
 
     /**
-     * Solves a specific subproblem.
+     * Solves a specific subproblem. If targets are enabled, the subproblem is
+     * first solved as a decision problem (see {@link #getTarget(int, int)})
+     * and, if only the target is proven, the subproblem is deferred to be
+     * solved to optimality later.
      *
      * @param maxTimeMillis the maximum time (in milliseconds) in which the
      *                      lower bound can still be running; notice that this
@@ -150,84 +263,401 @@ public class LowerBound {
      * @param lastRound     the last round of the subproblem.
      */
     public void solveSubproblem(long maxTimeMillis, int firstRound, int lastRound) {
-        BranchAndBoundPartial bnb = new BranchAndBoundPartial(problem, edgePriority, partialMatching, firstRound, lastRound);
-        PartialSolution solution = bnb.solve(this, Integer.MAX_VALUE, threadExecutor, maxTimeMillis);
+        int target = useTargets ? getTarget(firstRound, lastRound) : Integer.MAX_VALUE;
+        solveSubproblem(maxTimeMillis, firstRound, lastRound, target);
+    }
 
-        if (Thread.currentThread().isInterrupted()) return;
+    /**
+     * Solves a specific subproblem considering only solutions with cost
+     * smaller than {@param target}, i.e. answering whether the optimal value
+     * of the subproblem is at least {@param target}.
+     *
+     * @param maxTimeMillis the maximum time (in milliseconds) in which the
+     *                      lower bound can still be running.
+     * @param firstRound    the first round of the subproblem.
+     * @param lastRound     the last round of the subproblem.
+     * @param target        the target value (Integer.MAX_VALUE to solve the
+     *                      subproblem to optimality).
+     */
+    private void solveSubproblem(long maxTimeMillis, int firstRound, int lastRound, int target) {
+        long startTimeMillis = System.currentTimeMillis();
+        solver.fireEvent(listener -> listener.windowStarted(firstRound, lastRound));
 
-        if (solution == null)
+        PartialSolution initialSolution = createInitialSolution(firstRound, lastRound);
+        boolean backward = reversedProblem != null && isBackwardCheaper(firstRound, lastRound, target, initialSolution);
+
+        BranchAndBoundPartial bnb;
+        if (!backward) {
+            bnb = new BranchAndBoundPartial(problem, edgePriority, partialMatching, firstRound, lastRound);
+            bnb.setInitialSolution(initialSolution);
+        }
+        else {
+            bnb = new BranchAndBoundPartial(reversedProblem, reversedEdgePriority, reversedPartialMatching, problem.nRounds - 1 - lastRound, problem.nRounds - 1 - firstRound);
+            bnb.setInitialSolution(initialSolution != null ? reverseSolution(initialSolution, reversedProblem) : null);
+        }
+        bnb.setLeafSearch(leafSearch);
+        PartialSolution bnbSolution = bnb.solve(backward ? reversedBounds : this, target, threadExecutor, maxTimeMillis);
+        PartialSolution solution = backward && bnbSolution != null ? reverseSolution(bnbSolution, problem) : bnbSolution;
+
+        // if the search was not completed, the bound over its open nodes is still valid
+        int newLB = solution != null ? solution.getDistance() : bnb.getLB();
+        long elapsedMillis = System.currentTimeMillis() - startTimeMillis;
+        solver.fireEvent(listener -> listener.windowFinished(firstRound, lastRound, newLB, solution != null, elapsedMillis));
+        if (newLB == Integer.MAX_VALUE)
             return;
 
-        int newLB = solution.getDistance();
-        int delta = newLB - bounds.get(firstRound, lastRound);
+        int oldLB = bounds.get(firstRound, lastRound);
+        int delta = newLB - oldLB;
+
+        // keeping track of the relative improvement of optimal solutions (used to compute targets)
+        if (solution != null && bounds.get(firstRound, lastRound) > 0) {
+            sumImprovementRatio += Math.max(0, delta) / ( double ) bounds.get(firstRound, lastRound);
+            nImprovementRatio++;
+        }
+
+        nestedSolutions[lastRound] = solution;
+
+        // if only the target was proven, the subproblem is solved again later
+        boolean targetProven = solution == null && newLB >= target;
+        if (targetProven)
+            deferredWindows.add(new int[]{ firstRound, lastRound });
 
         if (delta > 0) {
             bounds.set(firstRound, lastRound, newLB);
-            String info = String.format("# round %02d-%02d: lb improved %d", firstRound, lastRound, delta);
+            solver.fireEvent(listener -> listener.boundImproved(firstRound, lastRound, oldLB, newLB));
+            String info = String.format("# round %02d-%02d: lb improved %d%s%s", firstRound, lastRound, delta, solution != null ? "" : targetProven ? " (target)" : " (partial)", backward ? " (backward)" : "");
             solver.printStatus("lb", solver.getNNodes(), getLB(0), solver.getUB(), info);
 
             // updating nodes priority
+            if (solution == null) return;
             for (int r = firstRound; r < lastRound; r++) {
                 for (int u = 0; u < problem.nUmpires; u++) {
                     int g1 = solution.assignment[r][u];
                     int g2 = solution.assignment[r + 1][u];
                     edgePriority.improvePriority(g1, g2);
+                    if (reversedEdgePriority != null)
+                        reversedEdgePriority.improvePriority(reverseGame(g2), reverseGame(g1));
                 }
             }
         }
     }
 
+    /**
+     * Computes the target for the subproblem given by rounds [{@param
+     * firstRound},{@param lastRound}]. The target asks for half of the
+     * average relative improvement observed so far for subproblems solved to
+     * optimality, limited by the value needed to close the gap (i.e. the
+     * current upper bound minus the bounds of the rounds surrounding the
+     * subproblem), so that proving it is cheap while still improving the
+     * bound considerably.
+     *
+     * @param firstRound the first round of the subproblem.
+     * @param lastRound  the last round of the subproblem.
+     * @return the target for the subproblem or Integer.MAX_VALUE if no upper
+     * bound is known or no improvement was observed yet.
+     */
+    private int getTarget(int firstRound, int lastRound) {
+        int ub = solver.getUB();
+        if (ub == Integer.MAX_VALUE || nImprovementRatio == 0)
+            return Integer.MAX_VALUE;
+
+        int current = bounds.get(firstRound, lastRound);
+        int needed = ub - bounds.get(0, firstRound) - bounds.get(lastRound, problem.nRounds - 1);
+        int improvement = ( int ) (0.5 * current * sumImprovementRatio / nImprovementRatio);
+        return current + Math.max(1, Math.min(improvement, needed - current));
+    }
+
 
     /**
-     * Calculates and returns the cost of the solution of the assignment problem
-     * involving rounds {@param round} and {@param round}+1.
+     * Checks whether searching the sub-problem given by rounds [{@param
+     * firstRound},{@param lastRound}] backward (i.e. from the last round) is
+     * expected to be cheaper than searching it forward. For that, the sizes of
+     * both search trees are estimated with random dives and the backward
+     * search is only chosen if its tree is considerably smaller.
      *
-     * @param round the first round of the assignment problem.
-     * @return the cost of the solution of the assignment problem involving
-     * rounds {@param round} and {@param round}+1.
+     * @param firstRound      the first round of the subproblem.
+     * @param lastRound       the last round of the subproblem.
+     * @param target          the target value of the subproblem.
+     * @param initialSolution the initial solution of the subproblem (or
+     *                        null).
+     * @return true if the backward search is expected to be cheaper and false
+     * otherwise.
      */
-    private int calculateMatching(int round) {
-        HungarianAlgorithm hungarianAlgorithm = new HungarianAlgorithm();
-
-        int[][] costMatrix = new int[problem.nUmpires][problem.nUmpires];
-        for (int gir = 0; gir < problem.nUmpires; gir++) {
-            int g = round * problem.nUmpires + gir;
-            for (int gir2 = 0; gir2 < problem.nUmpires; gir2++) {
-                int g2 = (round + 1) * problem.nUmpires + gir2;
-                if (problem.q2 > 1 && (problem.games[g][0] == problem.games[g2][0]
-                  || problem.games[g][1] == problem.games[g2][1]
-                  || problem.games[g][0] == problem.games[g2][1]
-                  || problem.games[g][1] == problem.games[g2][0])) {
-                    costMatrix[gir][gir2] = Integer.MAX_VALUE;
-                }
-                else if (problem.q1 > 1 && problem.games[g][0] == problem.games[g2][0]) {
-                    costMatrix[gir][gir2] = Integer.MAX_VALUE;
-                }
-                else {
-                    costMatrix[gir][gir2] = problem.dist[problem.games[g][0] - 1][problem.games[g2][0] - 1];
-                }
+    private boolean isBackwardCheaper(int firstRound, int lastRound, int target, PartialSolution initialSolution) {
+        int ub = initialSolution != null ? ( int ) Math.min(target, initialSolution.getObjectiveCost()) : target;
+
+        BranchAndBoundPartial forward = new BranchAndBoundPartial(problem, edgePriority, partialMatching, firstRound, lastRound);
+        BranchAndBoundPartial backward = new BranchAndBoundPartial(reversedProblem, reversedEdgePriority, reversedPartialMatching, problem.nRounds - 1 - lastRound, problem.nRounds - 1 - firstRound);
+
+        double backwardSize = backward.estimateTreeSize(reversedBounds, ub, PROBE_DIVES, random);
+        double forwardSize = forward.estimateTreeSize(this, ub, PROBE_DIVES, random);
+        return BACKWARD_FACTOR * backwardSize < forwardSize;
+    }
+
+    /**
+     * Converts {@param solution} into the corresponding solution of
+     * {@param target}, which is the reverse of the solution's problem (see
+     * {@link Problem#reverse()}). Umpires are relabelled so that the first
+     * round of the returned solution is fixed as in the {@link
+     * BranchAndBoundPartial}.
+     *
+     * @param solution the solution to be converted.
+     * @param target   the reversed problem.
+     * @return the corresponding solution of the reversed problem.
+     */
+    private PartialSolution reverseSolution(PartialSolution solution, Problem target) {
+        int m = problem.nUmpires;
+        int firstRound = problem.nRounds - 1 - solution.lastRound;
+        int lastRound = problem.nRounds - 1 - solution.firstRound;
+
+        PartialSolution reversed = new PartialSolution(target, firstRound, lastRound);
+        for (int u = 0; u < m; u++) {
+            int newUmpire = solution.assignment[solution.lastRound][u] % m;
+            for (int r = firstRound; r <= lastRound; r++)
+                reversed.assignment[r][newUmpire] = reverseGame(solution.assignment[problem.nRounds - 1 - r][u]);
+        }
+        reversed.calculateScore();
+        return reversed;
+    }
+
+    /**
+     * Returns the game of the reversed problem corresponding to {@param game}
+     * (the mapping is its own inverse).
+     *
+     * @param game the game.
+     * @return the corresponding game of the reversed problem.
+     */
+    private int reverseGame(int game) {
+        int m = problem.nUmpires;
+        return (problem.nRounds - 1 - game / m) * m + game % m;
+    }
+
+    /**
+     * Creates an initial solution for the sub-problem given by rounds
+     * [{@param firstRound},{@param lastRound}] by extending the optimal
+     * solution of a nested window (with one round less) already solved.
+     *
+     * @param firstRound the first round of the subproblem.
+     * @param lastRound  the last round of the subproblem.
+     * @return a feasible solution for the subproblem or null if no nested
+     * window was solved to optimality or its extension is infeasible.
+     */
+    private PartialSolution createInitialSolution(int firstRound, int lastRound) {
+        PartialSolution inner = nestedSolutions[lastRound];
+        if (inner != null && inner.firstRound == firstRound + 1) {
+            nestedSolutions[lastRound] = null;
+            return extendSolution(inner, firstRound, lastRound, firstRound);
+        }
+
+        inner = nestedSolutions[lastRound - 1];
+        if (inner != null && inner.firstRound == firstRound) {
+            nestedSolutions[lastRound - 1] = null;
+            return extendSolution(inner, firstRound, lastRound, lastRound);
+        }
+
+        return null;
+    }
+
+    /**
+     * Extends solution {@param inner} with the games of {@param round} (which
+     * is either the round before or after the rounds of {@param inner}). The
+     * games are assigned to the umpires by solving an assignment problem in
+     * which assignments violating the q1/q2 constraints are forbidden. The
+     * umpires are then relabelled so that the first round is fixed as in the
+     * {@link BranchAndBoundPartial}.
+     *
+     * @param inner      the solution of the nested window.
+     * @param firstRound the first round of the extended solution.
+     * @param lastRound  the last round of the extended solution.
+     * @param round      the round added to the solution.
+     * @return the extended solution or null if it could not be extended.
+     */
+    private PartialSolution extendSolution(PartialSolution inner, int firstRound, int lastRound, int round) {
+        int m = problem.nUmpires;
+        int neighbour = round == firstRound ? round + 1 : round - 1;
+
+        int[][] costMatrix = new int[m][m];
+        for (int gir = 0; gir < m; gir++) {
+            int g = round * m + gir;
+            for (int u = 0; u < m; u++) {
+                int g2 = inner.assignment[neighbour][u];
+                if (!canExtend(inner, g, u, round))
+                    costMatrix[gir][u] = ShortestAugmentingPath.FORBIDDEN;
+                else
+                    costMatrix[gir][u] = round == firstRound ? problem.distGames[g][g2] : problem.distGames[g2][g];
             }
         }
 
-        int[][] assignments = hungarianAlgorithm.computeAssignments(costMatrix);
+        int umpireOfGame[] = new int[m];
+        if (assignmentAlgorithms.get().solve(costMatrix, m, m, umpireOfGame) == ShortestAugmentingPath.INFEASIBLE)
+            return null;
+
+        int extension[] = new int[m];
+        for (int gir = 0; gir < m; gir++)
+            extension[umpireOfGame[gir]] = round * m + gir;
+
+        // relabelling umpires so that umpire u is assigned to the u-th game of the first round
+        PartialSolution solution = new PartialSolution(problem, firstRound, lastRound);
+        for (int u = 0; u < m; u++) {
+            int firstGame = round == firstRound ? extension[u] : inner.assignment[firstRound][u];
+            int newUmpire = firstGame - firstRound * m;
+            for (int r = firstRound; r <= lastRound; r++)
+                solution.assignment[r][newUmpire] = r == round ? extension[u] : inner.assignment[r][u];
+        }
+        solution.calculateScore();
+        if (solution.getObjectiveCost() != solution.getDistance())
+            return null;
+
+        // the new edges also guide the search of the enclosing window
+        for (int u = 0; u < m; u++) {
+            int r = round == firstRound ? round : round - 1;
+            edgePriority.improvePriority(solution.assignment[r][u], solution.assignment[r + 1][u]);
+        }
+
+        return solution;
+    }
 
-        int distance = 0;
-        for (int[] a : assignments) {
-            int gir = a[0];
-            int gir2 = a[1];
-            int g = round * problem.nUmpires + gir;
-            int g2 = (round + 1) * problem.nUmpires + gir2;
-            distance += problem.dist[problem.games[g][0] - 1][problem.games[g2][0] - 1];
-            //edgePriority[problem.games[g][0] - 1][problem.games[g2][0] - 1] = 1;
+    /**
+     * Checks whether game {@param g} of {@param round} can be assigned to
+     * umpire {@param umpire} of solution {@param inner} without violating the
+     * q1/q2 constraints.
+     *
+     * @param inner  the solution of the nested window.
+     * @param g      the game to be assigned.
+     * @param umpire the umpire.
+     * @param round  the round of game {@param g}.
+     * @return true if the game can be assigned to the umpire and false
+     * otherwise.
+     */
+    private boolean canExtend(PartialSolution inner, int g, int umpire, int round) {
+        int direction = round < inner.firstRound ? 1 : -1;
+        for (int k = 1; k < Math.max(problem.q1, problem.q2); k++) {
+            int r = round + direction * k;
+            if (r < inner.firstRound || r > inner.lastRound)
+                break;
+
+            int g2 = inner.assignment[r][umpire];
+            if (k < problem.q1 && problem.games[g][0] == problem.games[g2][0])
+                return false;
+            if (k < problem.q2 && (problem.games[g][0] == problem.games[g2][0]
+              || problem.games[g][1] == problem.games[g2][1]
+              || problem.games[g][0] == problem.games[g2][1]
+              || problem.games[g][1] == problem.games[g2][0]))
+                return false;
         }
+        return true;
+    }
+
+    /**
+     * Calculates and returns the costs of the solutions of the assignment
+     * problems involving rounds r and r+1, for every round r. The problems
+     * are solved over the pairs of games allowed by the q1/q2 constraints
+     * (see {@link CompatibilityIndex}) with a {@link SparseAssignment}.
+     *
+     * @return the costs of the solutions of the assignment problems, indexed
+     * by their first round.
+     */
+    private int[] calculateMatchings() {
+        int m = problem.nUmpires, nMatchings = problem.nRounds - 1;
+        CompatibilityIndex index = problem.getCompatibilityIndex();
+        SparseAssignment sparseAssignment = new SparseAssignment();
+
+        int matchings[] = new int[nMatchings], assignment[] = new int[m];
+        int distances[] = null;
+        long relaxed[] = null;
+        for (int round = 0; round < nMatchings; round++) {
+            long result = sparseAssignment.solve(m, index.start[round], index.next[round], index.distance[round], assignment);
+            if (result != SparseAssignment.INFEASIBLE) {
+                matchings[round] = ( int ) result;
+                continue;
+            }
 
-        return distance;
+            // if no assignment respects the q1/q2 constraints (infeasible problem), the distances alone still give a bound
+            if (relaxed == null) {
+                distances = new int[nMatchings * m * m];
+                for (int r = 0; r < nMatchings; r++)
+                    for (int gir = 0; gir < m; gir++)
+                        for (int gir2 = 0; gir2 < m; gir2++)
+                            distances[(r * m + gir) * m + gir2] = problem.distGames[r * m + gir][(r + 1) * m + gir2];
+
+                relaxed = new long[nMatchings];
+                assignmentAlgorithms.get().solveBatch(distances, m, nMatchings, new int[nMatchings * m], relaxed);
+            }
+            matchings[round] = ( int ) relaxed[round];
+        }
+        return matchings;
+    }
+
+
+    /**
+     * This class keeps a private copy of the bounds used by a search worker,
+     * so that reading a bound costs a single (non-volatile) array load. The
+     * copy is refreshed only if the epoch of the bounds changed, which is
+     * checked once every {@link LowerBound#SNAPSHOT_REFRESH_NODES} nodes. Since bounds
+     * only increase, a stale copy is always valid (only slightly weaker).
+     * Instances are not thread-safe and must be used by a single worker.
+     */
+    public class Snapshot {
+
+        private final int suffix[], pair[];
+        private int epoch, nNodes = 0;
+
+        private Snapshot() {
+            suffix = new int[problem.nRounds];
+            pair = new int[problem.nRounds];
+            copy();
+        }
+
+        /**
+         * Returns the bound from {@param firstRound} till the last round of the
+         * problem.
+         *
+         * @param firstRound the first round.
+         * @return the (possibly stale) bound from {@param firstRound} till the
+         * last round of the problem.
+         */
+        public int getLB(int firstRound) {
+            return suffix[firstRound];
+        }
+
+        /**
+         * Returns the bound of rounds [{@param round},{@param round}+1].
+         *
+         * @param round the first round.
+         * @return the (possibly stale) bound of rounds [{@param
+         * round},{@param round}+1].
+         */
+        public int getPairLB(int round) {
+            return pair[round];
+        }
+
+        /**
+         * Counts a node and, once every {@link LowerBound#SNAPSHOT_REFRESH_NODES}
+         * nodes, refreshes the copy if the bounds changed since it was made.
+         */
+        public void refresh() {
+            if (++nNodes < SNAPSHOT_REFRESH_NODES)
+                return;
+
+            nNodes = 0;
+            if (epoch != bounds.epoch)
+                copy();
+        }
+
+        private void copy() {
+            epoch = bounds.epoch;
+            for (int r = 0; r < problem.nRounds; r++) {
+                suffix[r] = bounds.get(r, problem.nRounds - 1);
+                pair[r] = r < problem.nRounds - 1 ? bounds.get(r, r + 1) : 0;
+            }
+        }
     }
 
 
     /**
      * This private class maintains the lower bounds calculated for the all
-     * sub-problems. The fields of the class are thread-safe.
+     * sub-problems. The fields of the class are thread-safe and updates are
+     * synchronized, since bounds may be provided by different threads.
      */
     private class Bounds {
 
@@ -236,6 +666,12 @@ public class LowerBound {
 
         private final VolatileInteger lowerBounds[][];
 
+        /**
+         * Number of updates of the bounds (used by the snapshots to detect
+         * changes).
+         */
+        private volatile int epoch = 0;
+
         /**
          * Instantiates a new bounds container.
          *
@@ -271,12 +707,13 @@ public class LowerBound {
          * @param lastRound  the last round.
          * @param lb         the improved lower bound for [firstRound][lastRound].
          */
-        public void set(int firstRound, int lastRound, int lb) {
+        public synchronized void set(int firstRound, int lastRound, int lb) {
             for (int i = firstRound; i >= 0; i--) {
                 for (int j = lastRound; j < problem.nRounds; j++) {
                     lowerBounds[i][j].value = Math.max(lowerBounds[i][j].value, lowerBounds[i][firstRound].value + lb + lowerBounds[lastRound][j].value);
                 }
             }
+            epoch++;
         }
 
         /**
@@ -3,6 +3,7 @@ package be.kuleuven.codes.tup.bnb;
 import be.kuleuven.codes.tup.io.*;
 import be.kuleuven.codes.tup.model.*;
 import be.kuleuven.codes.tup.model.solution.*;
+import be.kuleuven.codes.tup.useful.*;
 
 import java.io.*;
 import java.util.*;
@@ -32,6 +33,16 @@ public class Main {
     private static int maxThreads = 2;//Runtime.getRuntime().availableProcessors();
     private static long timeLimitMillis = 72 * 60 * 60 * 1000;
     private static boolean useTimeWindows = true;
+    private static boolean useTargets = false;
+    private static boolean useLagrangian = false;
+    private static boolean balanceThreads = false;
+    private static boolean useBackward = false;
+    private static boolean useHistoryBound = false;
+    private static boolean useRoundBranching = false;
+    private static long memoryMB = 64;
+    private static File cacheDirectory = null;
+    private static boolean allowPrecompute = true;
+    private static LeafSearch.Policy leafSearchPolicy = LeafSearch.Policy.ALWAYS;
 
 
     /**
@@ -65,11 +76,26 @@ public class Main {
         System.out.printf("Instance: %s_%d_%d\n", instance, q1, q2);
         System.out.printf("Version: %s\n", VERSION);
         System.out.printf("    %s\n", INFO);
+        System.out.printf("    Kernels: %s\n", Kernels.INSTANCE.getName());
 
         long startTime = System.currentTimeMillis();
+        PartialMatching.setHashSizeBytes(memoryMB << 20);
+        PartialMatching.setAllowPrecompute(allowPrecompute);
+        PartialMatching.setMaxThreads(maxThreads);
+        PartialMatching.setCacheDirectory(cacheDirectory);
         BranchAndBound solver = new BranchAndBound(problem);
+        if (solver.partialMatching.getPrecomputedBytes() > 0)
+            System.out.printf("    Partial matchings precomputed: %.1f MB in %.2fs\n", solver.partialMatching.getPrecomputedBytes() / 1048576.0, solver.partialMatching.getPrecomputeTimeMillis() / 1000.0);
+        solver.setUseTargets(useTargets);
+        solver.setUseLagrangian(useLagrangian);
+        solver.setBalanceThreads(balanceThreads);
+        solver.setUseBackward(useBackward);
+        solver.setUseHistoryBound(useHistoryBound);
+        solver.setUseRoundBranching(useRoundBranching);
+        solver.setLeafSearchPolicy(leafSearchPolicy);
         Solution solution = solver.solve(ub, maxThreads, timeLimitMillis, useTimeWindows);
         long endTime = System.currentTimeMillis();
+        solver.partialMatching.flush();
 
         if (solution != null)
             SolutionWriter.writeSolutionToFile(solution, outputPath);
@@ -78,6 +104,7 @@ public class Main {
         System.out.printf("Best solution cost.: %s\n", solver.getUB() == Integer.MAX_VALUE ? "infeasible" : solver.getUB());
         System.out.printf("Number of nodes....: %d\n", solver.getNNodes());
         System.out.printf("Total runtime......: %.2fs\n", (endTime - startTime) / 1000.0);
+        System.out.printf("Partial matchings..: %.2f%% hits, %d evictions, %.2fs in assignments\n", 100 * solver.partialMatching.getHitRate(), solver.partialMatching.getNEvictions(), solver.partialMatching.getAssignmentTimeMillis() / 1000.0);
     }
 
     /**
@@ -92,9 +119,39 @@ public class Main {
             String option = args[++index];
 
             switch (option) {
+                case "-backward":
+                    useBackward = true;
+                    break;
+                case "-balance":
+                    balanceThreads = true;
+                    break;
+                case "-leaf-ls":
+                    leafSearchPolicy = LeafSearch.Policy.valueOf(args[++index].toUpperCase());
+                    break;
+                case "-cache":
+                    cacheDirectory = new File(args[++index]);
+                    break;
+                case "-history":
+                    useHistoryBound = true;
+                    break;
+                case "-rounds":
+                    useRoundBranching = true;
+                    break;
+                case "-lagrangian":
+                    useLagrangian = true;
+                    break;
+                case "-memory":
+                    memoryMB = Long.parseLong(args[++index]);
+                    break;
+                case "-no-dense":
+                    allowPrecompute = false;
+                    break;
                 case "-no-windows":
                     useTimeWindows = false;
                     break;
+                case "-targets":
+                    useTargets = true;
+                    break;
                 case "-threads":
                     maxThreads = new Integer(args[++index]);
                     break;
@@ -119,7 +176,17 @@ public class Main {
         System.out.println("    <output>     : Output solution file (example: umps14_7_3.sol).");
         System.out.println();
         System.out.println("Options:");
+        System.out.println("    -backward    : Search lower bound subproblems backward when cheaper (estimated).");
+        System.out.println("    -balance     : Move threads between the tree search and the lower bound.");
+        System.out.println("    -cache <dir> : Persist the partial matching tables in memory-mapped files in <dir>.");
+        System.out.println("    -history     : Prune tree nodes with history-aware matchings (where it pays off).");
+        System.out.println("    -lagrangian  : Run the Lagrangian lower bound in parallel (uses one more thread).");
+        System.out.println("    -leaf-ls <p> : Local search at window leaves: always, never or adaptive (default: always).");
+        System.out.println("    -memory <mb> : Memory for each partial matching table, in MB (default: 64).");
+        System.out.println("    -no-dense    : Do not precompute the partial matchings of small instances (m <= 8).");
         System.out.println("    -no-windows  : Run the lower bound without multiple time windows.");
+        System.out.println("    -rounds      : Branch on complete round assignments (k-best, by cost) instead of umpires.");
+        System.out.println("    -targets     : Solve lower bound subproblems as decision problems (targets).");
         System.out.println("    -threads <n> : Maximum number n of threads (default: number of CPUs).");
         System.out.println("    -time <time> : Time limit, in minutes (default: 4320).");
         System.out.println("    -ub <ub>     : Initial upper bound (default: unbounded).");
@@ -2,10 +2,13 @@ package be.kuleuven.codes.tup.bnb;
 
 import be.kuleuven.codes.tup.heuristic.assignment.*;
 import be.kuleuven.codes.tup.model.*;
+import be.kuleuven.codes.tup.useful.*;
 
-import java.util.*;
+import java.io.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
 
 /**
  * This class implements the Memoization scheme for the Partial Matchings.
@@ -15,21 +18,66 @@ import java.util.concurrent.atomic.*;
 public class PartialMatching {
 
     /**
-     * This static variable stores the initial size of the hash map. Larger
-     * values may improve performance, but will require more memory.
+     * This static variable stores the memory (in bytes) used by the hash map of
+     * each instance. The whole table is allocated when the object is created,
+     * so be careful when setting its value, as memory errors are likely to
+     * occur.
      */
-    private static final int HASH_INITIAL_SIZE = ( int ) 1e6;
+    private static long hashSizeBytes = 64L << 20;
 
     /**
-     * This static variable stores the maximum size of the hash limit. Be
-     * careful when setting its value, as memory errors are likely to occur.
+     * This static variable stores the directory of the memory-mapped files
+     * that persist the memoization tables across runs (null if the tables
+     * are kept only in memory).
      */
-    private static final int HASH_SIZE_LIMIT = ( int ) 5e8;
+    private static File cacheDirectory = null;
+
+    /**
+     * These static variables indicate whether the matchings of small
+     * instances may be precomputed (see {@link #precompute()}) and the
+     * maximum number of umpires for which this is done.
+     */
+    private static boolean allowPrecompute = true;
+    private static final int PRECOMPUTE_MAX_UMPIRES = 8;
+
+    /**
+     * This static variable stores the maximum number of threads used to
+     * precompute the matchings.
+     */
+    private static int maxThreads = 1;
+
+    /**
+     * Cost of assignments violating the q1/q2 constraints (large enough to
+     * be avoided whenever a feasible matching exists).
+     */
+    private static final long FORBIDDEN_COST = 1L << 32;
 
     public final Problem problem;
 
-    private AtomicLong counter = new AtomicLong(0);
-    private Map<Long, Integer> matchingMemoization = new ConcurrentHashMap<>(HASH_INITIAL_SIZE, 1.0f, 1);
+    /**
+     * The memoization table (null if the keys of the problem do not fit in a
+     * long, in which case the matchings are always computed). When the table
+     * is full, the least recently used matchings are evicted.
+     */
+    private final LongIntCache matchingMemoization;
+    private final LongAdder assignmentTime = new LongAdder();
+
+    /**
+     * The cost matrices (with forbidden assignments) and distance matrices of
+     * the complete matchings of each round, shared by the matchings solved
+     * by all threads.
+     */
+    private final long costs[][][], distances[][][];
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * The precomputed matchings, indexed by [round][used << m | usedNext],
+     * the memory used by them and the time spent precomputing them (null
+     * and zeros if the matchings were not precomputed).
+     */
+    private final int precomputed[][];
+    private long precomputedBytes = 0;
+    private double precomputeTimeMillis = 0;
 
 
     /**
@@ -39,8 +87,121 @@ public class PartialMatching {
      */
     public PartialMatching(Problem problem) {
         this.problem = problem;
+        this.costs = new long[problem.nRounds - 1][problem.nUmpires][problem.nUmpires];
+        this.distances = new long[problem.nRounds - 1][problem.nUmpires][problem.nUmpires];
+        buildCosts();
+
+        // dense tables are used if they are small enough (and fit in the memory given to the hash map)
+        long denseBytes = (problem.nRounds - 1) * (4L << (2 * problem.nUmpires));
+        if (allowPrecompute && problem.nUmpires <= PRECOMPUTE_MAX_UMPIRES && denseBytes <= hashSizeBytes) {
+            this.matchingMemoization = null;
+            this.precomputed = precompute();
+            return;
+        }
+
+        // keys use 2 bits per umpire plus the bits of the round
+        int roundBits = 64 - Long.numberOfLeadingZeros(problem.nRounds);
+        this.matchingMemoization = 2 * problem.nUmpires + roundBits <= 63 ? createMemoization() : null;
+        this.precomputed = null;
     }
 
+    /**
+     * Sets whether the matchings of small instances (with at most {@link
+     * #PRECOMPUTE_MAX_UMPIRES} umpires) may be precomputed by the instances
+     * created afterwards.
+     *
+     * @param allow true if the matchings may be precomputed and false
+     *              otherwise.
+     */
+    public static void setAllowPrecompute(boolean allow) {
+        allowPrecompute = allow;
+    }
+
+    /**
+     * Sets the maximum number of threads used to precompute the matchings of
+     * the instances created afterwards.
+     *
+     * @param nThreads the maximum number of threads.
+     */
+    public static void setMaxThreads(int nThreads) {
+        maxThreads = Math.max(1, nThreads);
+    }
+
+    /**
+     * Sets the directory of the memory-mapped files that persist the
+     * memoization tables of the instances created afterwards. Each instance
+     * (and pair q1/q2) has its own file, which is shared by concurrent
+     * processes and reused by later runs. Notice that the files are only
+     * used if the matchings are not precomputed.
+     *
+     * @param directory the directory of the files (or null to keep the tables
+     *                  only in memory).
+     */
+    public static void setCacheDirectory(File directory) {
+        cacheDirectory = directory;
+    }
+
+    /**
+     * Sets the memory (in bytes) used by the hash map of the instances created
+     * afterwards.
+     *
+     * @param bytes the memory (in bytes) of each hash map.
+     */
+    public static void setHashSizeBytes(long bytes) {
+        hashSizeBytes = bytes;
+    }
+
+
+    /**
+     * Returns the memory (in bytes) used by the precomputed matchings.
+     *
+     * @return the memory used by the precomputed matchings (0 if they were
+     * not precomputed).
+     */
+    public long getPrecomputedBytes() {
+        return precomputedBytes;
+    }
+
+    /**
+     * Returns the time (in milliseconds) spent precomputing the matchings.
+     *
+     * @return the time spent precomputing the matchings (0 if they were not
+     * precomputed).
+     */
+    public double getPrecomputeTimeMillis() {
+        return precomputeTimeMillis;
+    }
+
+    /**
+     * Returns the fraction of the queries answered by the memoization table
+     * (1 if the matchings were precomputed).
+     *
+     * @return the hit rate of the memoization table.
+     */
+    public double getHitRate() {
+        if (precomputed != null)
+            return 1;
+        return matchingMemoization != null ? matchingMemoization.getHitRate() : 0;
+    }
+
+    /**
+     * Returns the number of matchings evicted from the memoization table.
+     *
+     * @return the number of evicted matchings.
+     */
+    public long getNEvictions() {
+        return matchingMemoization != null ? matchingMemoization.getNEvictions() : 0;
+    }
+
+    /**
+     * Returns the total time (in milliseconds, summed over all threads) spent
+     * solving matchings.
+     *
+     * @return the time spent solving matchings.
+     */
+    public double getAssignmentTimeMillis() {
+        return assignmentTime.sum() / 1e6;
+    }
 
     /**
      * Gets the distance of a "partial" matching problem. If the matching was
@@ -56,64 +217,245 @@ public class PartialMatching {
      * @return the distance of the solution of the "partial" matching problem.
      */
     public int getDistance(int round, int umpireId, boolean used[], boolean usedNext[]) {
-        long hashCode = 0;
-        long multiplier = 1;
-        for (int i = used.length - 1; i >= 0; i--) {
-            hashCode += ((used[i] ? 1 : 0) + (usedNext[i] ? 2 : 0)) * multiplier;
-            multiplier *= 10;
+        // key: (round + 1) << 2m | used << m | usedNext (the umpire is given by the number of used games)
+        int m = problem.nUmpires;
+        long hashCode = round + 1;
+        for (int i = 0; i < m; i++)
+            hashCode = hashCode << 1 | (used[i] ? 1 : 0);
+        for (int i = 0; i < m; i++)
+            hashCode = hashCode << 1 | (usedNext[i] ? 1 : 0);
+
+        if (precomputed != null)
+            return precomputed[round][( int ) hashCode & ((1 << 2 * m) - 1)];
+
+        if (matchingMemoization != null) {
+            int result = matchingMemoization.get(hashCode, -1);
+            if (result >= 0)
+                return result;
         }
-        hashCode += (round + 1) * multiplier;
 
-        Integer result = matchingMemoization.get(hashCode);
-        if (result != null) {
-            return result;
+        int distance = computeDistance(round, umpireId, used, usedNext);
+        if (matchingMemoization != null)
+            matchingMemoization.put(hashCode, distance);
+
+        return distance;
+    }
+
+    /**
+     * Flushes the memoization table to its file (if it is persisted).
+     */
+    public void flush() {
+        if (matchingMemoization instanceof MappedLongIntHashMap)
+            (( MappedLongIntHashMap ) matchingMemoization).flush();
+    }
+
+    /**
+     * Creates the memoization table, which is backed by a memory-mapped file
+     * if a cache directory was set (and the file can be opened).
+     *
+     * @return the memoization table.
+     */
+    private LongIntCache createMemoization() {
+        if (cacheDirectory != null) {
+            long fingerprint = fingerprint();
+            File file = new File(cacheDirectory, String.format("%s_%d_%d-%016x.pm", new File(problem.name).getName(), problem.q1, problem.q2, fingerprint));
+            try {
+                cacheDirectory.mkdirs();
+                return new MappedLongIntHashMap(file, hashSizeBytes, fingerprint);
+            }
+            catch (IOException e) {
+                System.err.printf("Partial matchings: could not map %s (%s); using memory only.\n", file, e.getMessage());
+            }
+        }
+        return new LongIntHashMap(hashSizeBytes);
+    }
+
+    /**
+     * Computes a fingerprint of the data that determines the matchings (the
+     * q1/q2 parameters, the games and the distances), so that persisted
+     * tables are never used with a different instance.
+     *
+     * @return the fingerprint of the problem.
+     */
+    private long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ problem.q1) * 0x100000001b3L;
+        hash = (hash ^ problem.q2) * 0x100000001b3L;
+        hash = (hash ^ problem.nUmpires) * 0x100000001b3L;
+        hash = (hash ^ problem.nRounds) * 0x100000001b3L;
+        for (int game[] : problem.games)
+            hash = (hash ^ (game[0] << 16 | game[1])) * 0x100000001b3L;
+        for (int row[] : problem.dist)
+            for (int d : row)
+                hash = (hash ^ d) * 0x100000001b3L;
+        return hash;
+    }
+
+    /**
+     * Precomputes, in parallel (in a pool with {@link #maxThreads} threads),
+     * the partial matchings of every round and every pair of sets of used
+     * games (with the same cardinality) into dense arrays.
+     *
+     * @return the precomputed matchings, indexed by [round][used << m |
+     * usedNext].
+     */
+    private int[][] precompute() {
+        long startTime = System.currentTimeMillis();
+        int m = problem.nUmpires;
+        int table[][] = new int[problem.nRounds - 1][1 << 2 * m];
+
+        IntConsumer precomputeRound = index -> {
+            int round = index >> m, usedMask = index & ((1 << m) - 1);
+            int nUsed = Integer.bitCount(usedMask);
+            if (nUsed == 0 || nUsed == m)
+                return;
+
+            boolean used[] = new boolean[m], usedNext[] = new boolean[m];
+            for (int i = 0; i < m; i++)
+                used[i] = (usedMask & (1 << (m - 1 - i))) != 0;
+
+            for (int usedNextMask = 0; usedNextMask < 1 << m; usedNextMask++) {
+                if (Integer.bitCount(usedNextMask) != nUsed)
+                    continue;
+
+                for (int i = 0; i < m; i++)
+                    usedNext[i] = (usedNextMask & (1 << (m - 1 - i))) != 0;
+                table[round][usedMask << m | usedNextMask] = computeDistance(round, nUsed - 1, used, usedNext);
+            }
+        };
+
+        // the parallel stream runs in the pool of the task that starts it, so it is limited to maxThreads threads
+        IntStream indices = IntStream.range(0, (problem.nRounds - 1) << m);
+        if (maxThreads <= 1) {
+            indices.forEach(precomputeRound);
         }
-        else if (counter.get() >= HASH_SIZE_LIMIT) {
-            return 0;
+        else {
+            ForkJoinPool pool = new ForkJoinPool(maxThreads);
+            try {
+                pool.submit(() -> indices.parallel().forEach(precomputeRound)).get();
+            }
+            catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+            finally {
+                pool.shutdown();
+            }
         }
 
-        HungarianAlgorithm hungarianAlgorithm = new HungarianAlgorithm();
+        precomputedBytes = (problem.nRounds - 1) * (4L << 2 * m);
+        precomputeTimeMillis = System.currentTimeMillis() - startTime;
+        return table;
+    }
 
-        int map[] = new int[problem.nRounds];
-        int mapNext[] = new int[problem.nRounds];
-        int idx = 0, idxNext = 0;
-        for (int i = 0; i < used.length; i++) {
-            if (!used[i]) map[idx++] = i;
-            if (!usedNext[i]) mapNext[idxNext++] = i;
+    /**
+     * Solves the "partial" matching problem incrementally: the deepest
+     * matching of the stack of the current thread whose used games are a
+     * subset of {@param used} and {@param usedNext} (or the complete matching
+     * of the round) is copied and the remaining used games are removed from
+     * it, each removal costing O(m^2).
+     *
+     * @param round    the round of the matching subproblem.
+     * @param umpireId the umpire considered.
+     * @param used     boolean array indicating the assigned games in the
+     *                 current round.
+     * @param usedNext boolean array indicating the assigned games in the next
+     *                 round.
+     * @return the distance of the solution of the "partial" matching problem.
+     */
+    private int computeDistance(int round, int umpireId, boolean used[], boolean usedNext[]) {
+        long startTime = System.nanoTime();
+        Workspace workspace = workspaces.get();
+
+        // lazily validating the matchings of the stack (they may belong to other branches)
+        int depth = umpireId + 1, base = depth - 1;
+        while (base > 0 && !workspace.isPrefix(base, round, used, usedNext))
+            base--;
+
+        IncrementalAssignment matching = workspace.stack[depth];
+        boolean baseUsed[] = null, baseUsedNext[] = null;
+        if (base > 0) {
+            matching.copyFrom(workspace.stack[base]);
+            baseUsed = workspace.used[base];
+            baseUsedNext = workspace.usedNext[base];
+        }
+        else {
+            matching.copyFrom(workspace.getRoot(round));
         }
 
-        int[][] costMatrix = new int[problem.nUmpires - (umpireId + 1)][problem.nUmpires - (umpireId + 1)];
-        for (idx = 0; idx < costMatrix.length; idx++) {
-            int game = round * problem.nUmpires + map[idx];
-            for (idxNext = 0; idxNext < costMatrix[idx].length; idxNext++) {
-                int gameNext = (round + 1) * problem.nUmpires + mapNext[idxNext];
-
-                if (problem.q2 > 1 && (problem.games[game][0] == problem.games[gameNext][0]
-                  || problem.games[game][1] == problem.games[gameNext][1]
-                  || problem.games[game][0] == problem.games[gameNext][1]
-                  || problem.games[game][1] == problem.games[gameNext][0])) {
-                    costMatrix[idx][idxNext] = Integer.MAX_VALUE;
-                }
-                else if (problem.q1 > 1 && problem.games[game][0] == problem.games[gameNext][0]) {
-                    costMatrix[idx][idxNext] = Integer.MAX_VALUE;
-                }
-                else {
-                    costMatrix[idx][idxNext] = problem.dist[problem.games[game][0] - 1][problem.games[gameNext][0] - 1];
+        for (int i = 0, j = 0; i < used.length; i++) {
+            if (!used[i] || (baseUsed != null && baseUsed[i])) continue;
+            while (!usedNext[j] || (baseUsedNext != null && baseUsedNext[j])) j++;
+            matching.remove(i, j++);
+        }
+        workspace.push(depth, round, used, usedNext);
+
+        int distance = ( int ) matching.getWeight(distances[round]);
+        assignmentTime.add(System.nanoTime() - startTime);
+        return distance;
+    }
+
+    /**
+     * Builds the cost matrices of the (complete) matchings between games of
+     * consecutive rounds, in which assignments violating the q1/q2
+     * constraints have cost {@link #FORBIDDEN_COST}.
+     */
+    private void buildCosts() {
+        int m = problem.nUmpires;
+        CompatibilityIndex index = problem.getCompatibilityIndex();
+        for (int round = 0; round < problem.nRounds - 1; round++) {
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < m; j++) {
+                    distances[round][i][j] = problem.distGames[round * m + i][(round + 1) * m + j];
+                    costs[round][i][j] = index.isCompatible(round, i, j) ? distances[round][i][j] : FORBIDDEN_COST;
                 }
             }
         }
+    }
+
+    /**
+     * Matchings solved by one thread: the complete matching of each round and
+     * a stack with the last matching solved for each number of used games.
+     */
+    private class Workspace {
+        final IncrementalAssignment roots[];
+        final IncrementalAssignment stack[];
+        final int stackRound[];
+        final boolean used[][], usedNext[][];
+
+        Workspace() {
+            int m = problem.nUmpires;
+            roots = new IncrementalAssignment[problem.nRounds - 1];
+            stack = new IncrementalAssignment[m + 1];
+            stackRound = new int[m + 1];
+            used = new boolean[m + 1][m];
+            usedNext = new boolean[m + 1][m];
+            for (int depth = 0; depth <= m; depth++) {
+                stack[depth] = new IncrementalAssignment(costs[0]);
+                stackRound[depth] = -1;
+            }
+        }
 
-        int distance = 0;
-        int[][] assignments = hungarianAlgorithm.computeAssignments(costMatrix);
-        for (int[] a : assignments) {
-            int game = round * problem.nUmpires + map[a[0]];
-            int gameNext = (round + 1) * problem.nUmpires + mapNext[a[1]];
-            distance += problem.dist[problem.games[game][0] - 1][problem.games[gameNext][0] - 1];
+        IncrementalAssignment getRoot(int round) {
+            if (roots[round] == null) {
+                roots[round] = new IncrementalAssignment(costs[round]);
+                roots[round].solve();
+            }
+            return roots[round];
         }
 
-        counter.incrementAndGet();
-        matchingMemoization.put(hashCode, distance);
+        boolean isPrefix(int depth, int round, boolean currentUsed[], boolean currentUsedNext[]) {
+            if (stackRound[depth] != round)
+                return false;
+            for (int i = 0; i < currentUsed.length; i++)
+                if ((used[depth][i] && !currentUsed[i]) || (usedNext[depth][i] && !currentUsedNext[i]))
+                    return false;
+            return true;
+        }
 
-        return distance;
+        void push(int depth, int round, boolean currentUsed[], boolean currentUsedNext[]) {
+            stackRound[depth] = round;
+            System.arraycopy(currentUsed, 0, used[depth], 0, currentUsed.length);
+            System.arraycopy(currentUsedNext, 0, usedNext[depth], 0, currentUsedNext.length);
+        }
     }
 }
@@ -0,0 +1,56 @@
+package be.kuleuven.codes.tup.bnb;
+
+import be.kuleuven.codes.tup.model.solution.*;
+
+/**
+ * Listener of the events produced by the {@link BranchAndBound} and its
+ * {@link LowerBound}. Events are delivered asynchronously, in a dedicated
+ * thread, so that implementations may be slow without affecting the search;
+ * notice, however, that events are dropped if the consumer falls too far
+ * behind.
+ *
+ * @author Tulio Toffolo
+ */
+public interface SolverListener {
+
+    /**
+     * Called when the lower bound of the window [{@param firstRound},{@param
+     * lastRound}] is improved.
+     *
+     * @param firstRound the first round of the window.
+     * @param lastRound  the last round of the window.
+     * @param oldLB      the previous lower bound of the window.
+     * @param newLB      the new lower bound of the window.
+     */
+    default void boundImproved(int firstRound, int lastRound, int oldLB, int newLB) { }
+
+    /**
+     * Called when a new best solution is found.
+     *
+     * @param solution the new best solution.
+     * @param source   the procedure that found the solution.
+     */
+    default void incumbentImproved(Solution solution, String source) { }
+
+    /**
+     * Called when the {@link LowerBound} starts solving the window
+     * [{@param firstRound},{@param lastRound}].
+     *
+     * @param firstRound the first round of the window.
+     * @param lastRound  the last round of the window.
+     */
+    default void windowStarted(int firstRound, int lastRound) { }
+
+    /**
+     * Called when the {@link LowerBound} finishes solving the window
+     * [{@param firstRound},{@param lastRound}].
+     *
+     * @param firstRound    the first round of the window.
+     * @param lastRound     the last round of the window.
+     * @param lb            the bound obtained for the window
+     *                      (Integer.MAX_VALUE if none).
+     * @param optimal       true if the window was solved to optimality.
+     * @param elapsedMillis the time spent solving the window.
+     */
+    default void windowFinished(int firstRound, int lastRound, int lb, boolean optimal, long elapsedMillis) { }
+}
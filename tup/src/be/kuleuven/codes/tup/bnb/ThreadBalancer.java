@@ -0,0 +1,96 @@
+package be.kuleuven.codes.tup.bnb;
+
+import be.kuleuven.codes.tup.thread.*;
+
+/**
+ * This class periodically moves threads between the tree search of the
+ * {@link BranchAndBound} and the {@link LowerBound} calculation. At each
+ * period, the lower bound improvement per core-second of the lower bound
+ * calculation is compared with the upper bound improvement per core-second of
+ * the tree search, and one thread is moved to the side with the largest
+ * marginal value. Both sides keep at least one thread, and no thread is moved
+ * before an upper bound is known (finding one is the tree search's job).
+ *
+ * @author Tulio Toffolo
+ */
+public class ThreadBalancer implements Runnable {
+
+    public final BranchAndBound solver;
+    public final LowerBound lowerbound;
+
+    private final ThreadExecutor treeExecutor;
+    private final long periodMillis;
+
+
+    /**
+     * Instantiates a new thread balancer.
+     *
+     * @param solver       the branch-and-bound solver.
+     * @param lowerbound   the lower bound calculation.
+     * @param treeExecutor the executor used by the tree search.
+     * @param periodMillis the time (in milliseconds) between two evaluations.
+     */
+    public ThreadBalancer(BranchAndBound solver, LowerBound lowerbound, ThreadExecutor treeExecutor, long periodMillis) {
+        this.solver = solver;
+        this.lowerbound = lowerbound;
+        this.treeExecutor = treeExecutor;
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * Executes the balancing until the lower bound calculation finishes or the
+     * thread is interrupted.
+     */
+    public void run() {
+        int lastLB = lowerbound.getLB(0);
+        int lastUB = solver.getUB();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(periodMillis);
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+
+            ThreadExecutor lbExecutor = lowerbound.getThreadExecutor();
+            if (lbExecutor == null || lbExecutor instanceof SequentialExecutor || treeExecutor instanceof SequentialExecutor)
+                continue;
+
+            int lb = lowerbound.getLB(0), ub = solver.getUB();
+            synchronized (treeExecutor) {
+                if (lbExecutor.isShutdown())
+                    break;
+
+                int nTree = treeExecutor.getCorePoolSize(), nLB = lbExecutor.getCorePoolSize();
+                double seconds = periodMillis / 1000.0;
+                double lbGain = (lb - lastLB) / (nLB * seconds);
+                double ubGain = lastUB < Integer.MAX_VALUE ? (lastUB - ub) / (nTree * seconds) : 0;
+
+                if (ub < Integer.MAX_VALUE) {
+                    if (lbGain > ubGain && nTree > 1) {
+                        treeExecutor.setPoolSize(--nTree);
+                        lbExecutor.setPoolSize(++nLB);
+                        printShift(nTree, nLB, lbGain, ubGain);
+                    }
+                    else if (ubGain > lbGain && nLB > 1) {
+                        lbExecutor.setPoolSize(--nLB);
+                        treeExecutor.setPoolSize(++nTree);
+                        printShift(nTree, nLB, lbGain, ubGain);
+                    }
+                }
+            }
+
+            lastLB = lb;
+            lastUB = ub;
+        }
+    }
+
+    /**
+     * Prints (logs) a shift of threads.
+     */
+    private void printShift(int nTree, int nLB, double lbGain, double ubGain) {
+        String info = String.format("# threads: tree %d, lb %d (lb gain %.1f, ub gain %.1f per core-second)", nTree, nLB, lbGain, ubGain);
+        solver.printStatus("thr", solver.getNNodes(), lowerbound.getLB(0), solver.getUB(), info);
+    }
+}
@@ -0,0 +1,21 @@
+package be.kuleuven.codes.tup.bnb;
+
+/**
+ * Provider of lower bounds for the sub-problems given by time windows
+ * (sets of consecutive rounds).
+ *
+ * @author Tulio Toffolo
+ */
+public interface WindowBounds {
+
+    /**
+     * Gets the current best lower bound for the sub-problem given by rounds
+     * [{@param firstRound},{@param lastRound}].
+     *
+     * @param firstRound the first round.
+     * @param lastRound  the last round.
+     * @return the lower bound value between {@param firstRound} and {@param
+     * lastRound}.
+     */
+    int getLB(int firstRound, int lastRound);
+}
@@ -1,6 +1,7 @@
 package be.kuleuven.codes.tup.heuristic;
 
 
+import be.kuleuven.codes.tup.heuristic.assignment.*;
 import be.kuleuven.codes.tup.heuristic.move.*;
 import be.kuleuven.codes.tup.model.*;
 import be.kuleuven.codes.tup.model.solution.*;
@@ -12,6 +13,7 @@ public class SteepestDescent {
     public final boolean OUTPUT = false;
     public AssignmentMove assignmentMove;
     public PartialAssignmentMove partialAssignmentMove;
+    public AssignmentAlgorithm assignmentAlgorithm = new AdaptiveAssignment();
 
     public SteepestDescent() {
         assignmentMove = new AssignmentMove(new Random());
@@ -24,38 +26,42 @@ public class SteepestDescent {
         long currentObj = current.getObjectiveCost();
         boolean improved = true;
         int iter = 0;
+
+        // the assignment problems of all rounds are built from the same solution and solved as a batch
+        int m = problem.nUmpires;
+        int costs[] = new int[problem.nRounds * m * m], assignments[] = new int[problem.nRounds * m];
+        long results[] = new long[problem.nRounds];
+
+        // the rounds are evaluated against the (unchanged) current solution
+        long objectives[] = new long[problem.nRounds];
+
         while (improved) {
             improved = false;
 
-            int[] bestAssInIter = null;
-            int bestRound = 0;
-            long bestInIterOBj = currentObj;
+            for (int round = 0; round < problem.nRounds; round++)
+                assignmentMove.buildCostMatrix(current, round, costs, round * m * m);
+            assignmentAlgorithm.solveBatch(costs, m, problem.nRounds, assignments, results);
+            for (int round = 0; round < problem.nRounds; round++)
+                objectives[round] = results[round] == AssignmentAlgorithm.INFEASIBLE
+                  ? Long.MAX_VALUE : current.getObjectiveCost(round, assignments, round * m);
 
+            // the first round with the best objective is selected
+            int bestRound = -1;
+            long bestInIterOBj = currentObj;
             for (int round = 0; round < problem.nRounds; round++) {
-                int[] originals = Arrays.copyOf(current.assignment[round], current.assignment[round].length);
-                int[] newAss = assignmentMove.performMove(current, round);
-                long newOBj = current.getObjectiveCost();
-                if (newOBj < bestInIterOBj) {
+                if (objectives[round] < bestInIterOBj) {
                     if (OUTPUT)
-                        System.out.println("[" + iter + "]" + "[ASSIGN] Found new best solution: " + newOBj);
-                    bestAssInIter = newAss;
+                        System.out.println("[" + iter + "]" + "[ASSIGN] Found new best solution: " + objectives[round]);
                     bestRound = round;
-                    bestInIterOBj = newOBj;
-                }
-
-                for (int ump = 0; ump < problem.nUmpires; ump++) {
-                    current.assignValue(ump, originals[ump], round);
+                    bestInIterOBj = objectives[round];
                 }
             }
 
-            if (bestInIterOBj < currentObj) {
+            if (bestRound != -1) {
                 //                System.out.println("Steepest Descent most improving round " + bestRound);
-                //                System.out.println("New assignment");
                 for (int ump = 0; ump < problem.nUmpires; ump++) {
-                    //                    System.out.print(Character.toChars(bestAssInIter[ump] % problem.nUmpires + 'A'));
-                    current.assignValue(ump, bestAssInIter[ump], bestRound);
+                    current.assignValue(ump, assignments[bestRound * m + ump] + bestRound * m, bestRound);
                 }
-                //                System.out.println();
                 currentObj = bestInIterOBj;
                 improved = true;
             }
@@ -63,7 +69,6 @@ public class SteepestDescent {
             iter++;
         }
 
-
         return current;
 
 
@@ -75,33 +80,40 @@ public class SteepestDescent {
         long currentObj = current.getObjectiveCost();
         boolean improved = true;
         int iter = 0;
+
+        // the assignment problems of all rounds are built from the same solution and solved as a batch
+        int m = problem.nUmpires, nRounds = sol0.lastRound - sol0.firstRound + 1;
+        int costs[] = new int[nRounds * m * m], assignments[] = new int[nRounds * m];
+        long results[] = new long[nRounds];
+
+        // the rounds are evaluated against the (unchanged) current solution
+        long objectives[] = new long[nRounds];
+
         while (improved) {
             improved = false;
 
-            int[] bestAssInIter = null;
-            int bestRound = 0;
-            long bestInIterOBj = currentObj;
+            for (int round = sol0.firstRound; round <= sol0.lastRound; round++)
+                partialAssignmentMove.buildCostMatrix(current, round, sol0.firstRound, sol0.lastRound, costs, (round - sol0.firstRound) * m * m);
+            assignmentAlgorithm.solveBatch(costs, m, nRounds, assignments, results);
+            for (int round = sol0.firstRound; round <= sol0.lastRound; round++)
+                objectives[round - sol0.firstRound] = results[round - sol0.firstRound] == AssignmentAlgorithm.INFEASIBLE
+                  ? Long.MAX_VALUE : current.getObjectiveCost(round, assignments, (round - sol0.firstRound) * m);
 
+            // the first round with the best objective is selected
+            int bestRound = -1;
+            long bestInIterOBj = currentObj;
             for (int round = sol0.firstRound; round <= sol0.lastRound; round++) {
-                int[] originals = Arrays.copyOf(current.assignment[round], current.assignment[round].length);
-                int[] newAss = partialAssignmentMove.performMove(current, round, sol0.firstRound, sol0.lastRound);
-                long newOBj = current.getObjectiveCost();
-                if (newOBj < bestInIterOBj) {
+                if (objectives[round - sol0.firstRound] < bestInIterOBj) {
                     if (OUTPUT)
-                        System.out.println("[" + iter + "]" + "[ASSIGN] Found new best solution: " + newOBj);
-                    bestAssInIter = newAss;
+                        System.out.println("[" + iter + "]" + "[ASSIGN] Found new best solution: " + objectives[round - sol0.firstRound]);
                     bestRound = round;
-                    bestInIterOBj = newOBj;
-                }
-
-                for (int ump = 0; ump < problem.nUmpires; ump++) {
-                    current.assignValue(ump, originals[ump], round);
+                    bestInIterOBj = objectives[round - sol0.firstRound];
                 }
             }
 
-            if (bestInIterOBj < currentObj) {
+            if (bestRound != -1) {
                 for (int ump = 0; ump < problem.nUmpires; ump++) {
-                    current.assignValue(ump, bestAssInIter[ump], bestRound);
+                    current.assignValue(ump, assignments[(bestRound - sol0.firstRound) * m + ump] + bestRound * m, bestRound);
                 }
                 currentObj = bestInIterOBj;
                 improved = true;
@@ -112,4 +124,4 @@ public class SteepestDescent {
 
         return current;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package be.kuleuven.codes.tup.heuristic.assignment;
+
+/**
+ * Assignment algorithm that selects the solver by the size of the matrices:
+ * {@link ShortestAugmentingPath} for small matrices and {@link
+ * AuctionAlgorithm} for square matrices with at least {@link
+ * #AUCTION_MIN_SIZE} rows.
+ * <p>
+ * The crossover was measured with a timing loop over batches of random n x n
+ * matrices (uniform costs in [0, 2000) and euclidean distances between random
+ * points, minimum of 10 repetitions after warm-up, single core): both solvers
+ * take about the same time for n = 16 (~13us); for n = 20 the auction is
+ * 10-20% faster, for n = 24-32 it is 20-35% faster and for n = 64-128 it is
+ * about 2x faster. Below n = 12 the shortest augmenting path is faster.
+ *
+ * @author Tulio Toffolo
+ */
+public class AdaptiveAssignment implements AssignmentAlgorithm {
+
+    /**
+     * Minimum dimension of the (square) matrices solved with the auction
+     * algorithm.
+     */
+    public static final int AUCTION_MIN_SIZE = 20;
+
+    private final ShortestAugmentingPath shortestAugmentingPath = new ShortestAugmentingPath();
+    private final AuctionAlgorithm auction = new AuctionAlgorithm();
+
+
+    public int[][] computeAssignments(int[][] costMatrix) {
+        if (costMatrix.length >= AUCTION_MIN_SIZE && costMatrix.length == costMatrix[0].length)
+            return auction.computeAssignments(costMatrix);
+        return shortestAugmentingPath.computeAssignments(costMatrix);
+    }
+
+    public void solveBatch(int costs[], int n, int nMatrices, int assignments[], long results[]) {
+        if (n >= AUCTION_MIN_SIZE)
+            auction.solveBatch(costs, n, nMatrices, assignments, results);
+        else
+            shortestAugmentingPath.solveBatch(costs, n, nMatrices, assignments, results);
+    }
+}
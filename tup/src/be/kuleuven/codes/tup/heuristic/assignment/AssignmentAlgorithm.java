@@ -8,7 +8,45 @@ package be.kuleuven.codes.tup.heuristic.assignment;
  */
 public interface AssignmentAlgorithm {
 
+    /**
+     * Cost reported for assignment problems without a feasible solution.
+     */
+    long INFEASIBLE = Long.MAX_VALUE;
+
 
     int[][] computeAssignments(int[][] costMatrix);
 
+    /**
+     * Solves {@param nMatrices} n x n assignment problems packed in {@param
+     * costs} (matrix k starts at position k * n * n, row by row), writing the
+     * column assigned to each row of matrix k at positions [k * n, (k + 1) *
+     * n) of {@param assignments} and its cost at {@param results}[k].
+     * The matrices are solved in the calling thread (callers that want to
+     * solve a batch in parallel split it among their own threads); this
+     * default implementation solves them one at a time with {@link
+     * #computeAssignments(int[][])}.
+     *
+     * @param costs       the packed cost matrices.
+     * @param n           the dimension of the matrices.
+     * @param nMatrices   the number of matrices.
+     * @param assignments array that receives the assignments.
+     * @param results     array that receives the costs of the assignments
+     *                    (or {@link #INFEASIBLE}).
+     */
+    default void solveBatch(int costs[], int n, int nMatrices, int assignments[], long results[]) {
+        for (int k = 0; k < nMatrices; k++) {
+            int matrix[][] = new int[n][n];
+            for (int i = 0; i < n; i++)
+                System.arraycopy(costs, k * n * n + i * n, matrix[i], 0, n);
+
+            int[][] pairs = computeAssignments(matrix);
+            results[k] = pairs == null ? INFEASIBLE : 0;
+            if (pairs == null) continue;
+
+            for (int[] pair : pairs) {
+                assignments[k * n + pair[0]] = pair[1];
+                results[k] += costs[k * n * n + pair[0] * n + pair[1]];
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+package be.kuleuven.codes.tup.heuristic.assignment;
+
+import java.util.*;
+
+/**
+ * Auction algorithm (Bertsekas) with epsilon-scaling for the assignment
+ * problem. Costs are multiplied by n+1, so that the assignment obtained with
+ * epsilon = 1 is optimal for the original (integer) costs. Rows bid for the
+ * columns with the best value (benefit minus price), raising their prices by
+ * the difference to the second best value plus epsilon.
+ * <p>
+ * Rows bid one at a time (Gauss-Seidel auction), and batches of matrices are
+ * solved one at a time, in the calling thread. Forbidden assignments ({@link
+ * ShortestAugmentingPath#FORBIDDEN} entries) receive a cost larger than any
+ * complete assignment without them, so that they are only used (and the
+ * problem is reported infeasible) if there is no alternative.
+ *
+ * @author Tulio Toffolo
+ */
+public class AuctionAlgorithm implements AssignmentAlgorithm {
+
+    /**
+     * Factor by which epsilon is divided in each scaling phase.
+     */
+    private static final long SCALING_FACTOR = 16;
+
+    private long prices[] = new long[0];
+    private int rowOfCol[] = new int[0], colOfRow[] = new int[0], queue[] = new int[0];
+
+    // column and new price of the last bid
+    private int bidCol;
+    private long bidValue;
+
+
+    public int[][] computeAssignments(int[][] costMatrix) {
+        int n = costMatrix.length;
+        if (n != costMatrix[0].length)
+            return new ShortestAugmentingPath().computeAssignments(costMatrix);
+
+        int costs[] = new int[n * n], assignment[] = new int[n];
+        for (int i = 0; i < n; i++)
+            System.arraycopy(costMatrix[i], 0, costs, i * n, n);
+        if (solve(costs, 0, n, assignment, 0) == INFEASIBLE)
+            return null;
+
+        int[][] assignments = new int[n][];
+        for (int i = 0; i < n; i++)
+            assignments[i] = new int[]{ i, assignment[i] };
+        return assignments;
+    }
+
+    public void solveBatch(int costs[], int n, int nMatrices, int assignments[], long results[]) {
+        for (int k = 0; k < nMatrices; k++)
+            results[k] = solve(costs, k * n * n, n, assignments, k * n);
+    }
+
+    /**
+     * Solves the n x n assignment problem stored row by row in {@param
+     * costs}, starting at position {@param offset}.
+     *
+     * @param costs            the cost matrix ({@link ShortestAugmentingPath#FORBIDDEN}
+     *                         entries are forbidden).
+     * @param offset           the position of the matrix in {@param costs}.
+     * @param n                the dimension of the matrix.
+     * @param assignment       array that receives the column assigned to each
+     *                         row.
+     * @param assignmentOffset the position of the first row in {@param
+     *                         assignment}.
+     * @return the cost of the optimal assignment or {@link #INFEASIBLE} if
+     * there is no feasible assignment.
+     */
+    public long solve(int costs[], int offset, int n, int assignment[], int assignmentOffset) {
+        ensureCapacity(n);
+
+        // forbidden assignments cost more than any assignment without them (costs may be negative, so an
+        // assignment with one forbidden entry must exceed the difference between any two assignments, 2 n maxCost)
+        long maxCost = 0;
+        for (int k = offset; k < offset + n * n; k++)
+            if (costs[k] != ShortestAugmentingPath.FORBIDDEN)
+                maxCost = Math.max(maxCost, Math.abs(( long ) costs[k]));
+        long forbiddenCost = 2 * n * maxCost + 1;
+
+        Arrays.fill(prices, 0, n, 0);
+        // the first phase starts with epsilon close to the range of the (scaled) costs
+        long epsilon = Math.max(1, maxCost * (n + 1) / SCALING_FACTOR);
+        while (true) {
+            auction(costs, offset, n, forbiddenCost, epsilon);
+            if (epsilon == 1)
+                break;
+            epsilon = Math.max(1, epsilon / SCALING_FACTOR);
+        }
+
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            int cost = costs[offset + i * n + colOfRow[i]];
+            if (cost == ShortestAugmentingPath.FORBIDDEN)
+                return INFEASIBLE;
+            assignment[assignmentOffset + i] = colOfRow[i];
+            total += cost;
+        }
+        return total;
+    }
+
+    /**
+     * Runs one phase of the auction (with a fixed {@param epsilon}), starting
+     * from the current prices and with all rows unassigned.
+     */
+    private void auction(int costs[], int offset, int n, long forbiddenCost, long epsilon) {
+        Arrays.fill(rowOfCol, 0, n, -1);
+        Arrays.fill(colOfRow, 0, n, -1);
+        for (int i = 0; i < n; i++)
+            queue[i] = i;
+        int nUnassigned = n;
+
+        while (nUnassigned > 0) {
+            int row = queue[--nUnassigned];
+            bid(costs, offset, n, forbiddenCost, epsilon, row);
+            nUnassigned = award(row, bidCol, bidValue, queue, nUnassigned);
+        }
+    }
+
+    /**
+     * Computes the bid of {@param row}, storing the column and the new price
+     * in bidCol and bidValue.
+     */
+    private void bid(int costs[], int offset, int n, long forbiddenCost, long epsilon, int row) {
+        long best = Long.MIN_VALUE, second = Long.MIN_VALUE;
+        int bestCol = -1;
+        int rowStart = offset + row * n;
+        for (int j = 0; j < n; j++) {
+            long cost = costs[rowStart + j] == ShortestAugmentingPath.FORBIDDEN ? forbiddenCost : costs[rowStart + j];
+            long value = -cost * (n + 1) - prices[j];
+            if (value > best) {
+                second = best;
+                best = value;
+                bestCol = j;
+            }
+            else if (value > second) {
+                second = value;
+            }
+        }
+
+        // with a single column, the price only needs to rise by epsilon
+        long increment = second == Long.MIN_VALUE ? epsilon : best - second + epsilon;
+        bidCol = bestCol;
+        bidValue = prices[bestCol] + increment;
+    }
+
+    /**
+     * Assigns {@param col} to {@param row} with the new {@param price}; the
+     * previous owner of the column (if any) is added to {@param unassigned}.
+     *
+     * @return the new number of unassigned rows.
+     */
+    private int award(int row, int col, long price, int unassigned[], int nUnassigned) {
+        int previous = rowOfCol[col];
+        if (previous >= 0) {
+            colOfRow[previous] = -1;
+            unassigned[nUnassigned++] = previous;
+        }
+        rowOfCol[col] = row;
+        colOfRow[row] = col;
+        prices[col] = price;
+        return nUnassigned;
+    }
+
+    private void ensureCapacity(int n) {
+        if (prices.length >= n)
+            return;
+
+        prices = new long[n];
+        rowOfCol = new int[n];
+        colOfRow = new int[n];
+        queue = new int[n];
+    }
+}
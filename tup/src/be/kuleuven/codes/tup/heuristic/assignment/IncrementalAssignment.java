@@ -0,0 +1,174 @@
+package be.kuleuven.codes.tup.heuristic.assignment;
+
+import java.util.*;
+
+/**
+ * Assignment solver (shortest augmenting paths with dual potentials) that
+ * supports removing a row and a column from a solved problem and
+ * re-optimizing it in O(n^2): the dual potentials remain feasible after the
+ * removal, so at most one augmenting path (from the row that lost its column
+ * to the column that lost its row) is needed. States can be copied in O(n),
+ * so that a search can keep the solved problems of each depth in a stack.
+ * <p>
+ * The cost matrix is shared (and never modified) by all copies.
+ *
+ * @author Tulio Toffolo
+ */
+public class IncrementalAssignment {
+
+    private static final long INFINITY = Long.MAX_VALUE / 4;
+
+    private long cost[][];
+    private final int n;
+
+    // index 0 is a virtual column; column j (1-based) corresponds to column j-1 of the cost matrix
+    private final long u[], v[];
+    private final int rowOfCol[];
+    private final boolean activeCol[];
+
+    // workspace of the augmentations
+    private final long minv[];
+    private final int way[];
+    private final boolean visited[];
+
+
+    /**
+     * Instantiates a new solver for the square matrix {@param cost}. Notice
+     * that the problem is only solved when {@link #solve()} is called.
+     *
+     * @param cost the cost matrix.
+     */
+    public IncrementalAssignment(long cost[][]) {
+        this.cost = cost;
+        this.n = cost.length;
+
+        this.u = new long[n + 1];
+        this.v = new long[n + 1];
+        this.rowOfCol = new int[n + 1];
+        this.activeCol = new boolean[n + 1];
+
+        this.minv = new long[n + 1];
+        this.way = new int[n + 1];
+        this.visited = new boolean[n + 1];
+    }
+
+    /**
+     * Solves the assignment problem with all rows and columns in O(n^3).
+     */
+    public void solve() {
+        Arrays.fill(u, 0);
+        Arrays.fill(v, 0);
+        Arrays.fill(rowOfCol, 0);
+        Arrays.fill(activeCol, true);
+        activeCol[0] = false;
+
+        for (int row = 1; row <= n; row++)
+            augment(row);
+    }
+
+    /**
+     * Removes {@param row} and {@param col} from the (solved) problem and
+     * re-optimizes it in O(n^2).
+     *
+     * @param row the row to be removed (0-based).
+     * @param col the column to be removed (0-based).
+     */
+    public void remove(int row, int col) {
+        int i = row + 1, j = col + 1;
+        int colOfRow = 0;
+        for (int k = 1; k <= n; k++)
+            if (activeCol[k] && rowOfCol[k] == i)
+                colOfRow = k;
+
+        activeCol[j] = false;
+        int freeRow = rowOfCol[j];
+        rowOfCol[j] = 0;
+        if (colOfRow == j)
+            return;
+
+        // the row previously assigned to col is re-assigned by one augmenting path
+        rowOfCol[colOfRow] = 0;
+        augment(freeRow);
+    }
+
+    /**
+     * Returns the sum of {@param weights} over the assignments of the active
+     * rows and columns.
+     *
+     * @param weights the weights of the assignments (e.g. the original
+     *                costs).
+     * @return the sum of the weights of the current assignments.
+     */
+    public long getWeight(long weights[][]) {
+        long weight = 0;
+        for (int j = 1; j <= n; j++)
+            if (activeCol[j])
+                weight += weights[rowOfCol[j] - 1][j - 1];
+        return weight;
+    }
+
+    /**
+     * Copies the state (cost matrix, solution and dual potentials) of {@param
+     * other}, which must have the same dimension, in O(n).
+     *
+     * @param other the solver to be copied.
+     */
+    public void copyFrom(IncrementalAssignment other) {
+        cost = other.cost;
+        System.arraycopy(other.u, 0, u, 0, n + 1);
+        System.arraycopy(other.v, 0, v, 0, n + 1);
+        System.arraycopy(other.rowOfCol, 0, rowOfCol, 0, n + 1);
+        System.arraycopy(other.activeCol, 0, activeCol, 0, n + 1);
+    }
+
+    /**
+     * Finds a shortest augmenting path (considering the reduced costs) from
+     * the unassigned {@param row} to an unassigned active column and updates
+     * the dual potentials.
+     *
+     * @param row the unassigned row (1-based).
+     */
+    private void augment(int row) {
+        rowOfCol[0] = row;
+        int j0 = 0;
+        Arrays.fill(minv, INFINITY);
+        Arrays.fill(visited, false);
+
+        do {
+            visited[j0] = true;
+            int i0 = rowOfCol[j0], j1 = 0;
+            long delta = INFINITY;
+            for (int j = 1; j <= n; j++) {
+                if (!activeCol[j] || visited[j]) continue;
+
+                long current = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                if (current < minv[j]) {
+                    minv[j] = current;
+                    way[j] = j0;
+                }
+                if (minv[j] < delta) {
+                    delta = minv[j];
+                    j1 = j;
+                }
+            }
+            for (int j = 0; j <= n; j++) {
+                if (j != 0 && !activeCol[j]) continue;
+
+                if (visited[j]) {
+                    u[rowOfCol[j]] += delta;
+                    v[j] -= delta;
+                }
+                else {
+                    minv[j] -= delta;
+                }
+            }
+            j0 = j1;
+        } while (rowOfCol[j0] != 0);
+
+        do {
+            int j1 = way[j0];
+            rowOfCol[j0] = rowOfCol[j1];
+            j0 = j1;
+        } while (j0 != 0);
+    }
+}
@@ -0,0 +1,136 @@
+package be.kuleuven.codes.tup.heuristic.assignment;
+
+import java.util.*;
+
+/**
+ * Enumerates the assignments of a square cost matrix in non-decreasing order
+ * of cost (Murty's k-best algorithm). The enumeration is lazy: each call to
+ * {@link #next(int[])} returns the best assignment not returned yet, and the
+ * subproblems (partitions) of an assignment are only solved once it is
+ * returned, so that stopping after k assignments costs O(k n^4).
+ * <p>
+ * The rows of the subproblems are partitioned in order: subproblem t of an
+ * assignment fixes its first t rows and excludes its column of row t, so the
+ * fixed rows are always a prefix and the exclusions of each row are kept in a
+ * bit mask (hence, n <= 64). Entries equal to {@link
+ * ShortestAugmentingPath#FORBIDDEN} are never used.
+ *
+ * @author Tulio Toffolo
+ */
+public class MurtyRanking {
+
+    private final int cost[][];
+    private final int n;
+
+    private final PriorityQueue<Node> queue = new PriorityQueue<>((a, b) -> Long.compare(a.cost, b.cost));
+    private final ShortestAugmentingPath assignmentAlgorithm = new ShortestAugmentingPath();
+
+    // workspace of the subproblems
+    private final int subCost[][], subAssignment[], freeCols[];
+    private final boolean usedCol[];
+
+
+    /**
+     * Instantiates the ranking of the assignments of {@param cost}, which
+     * must not be modified during the enumeration.
+     *
+     * @param cost the square cost matrix ({@link ShortestAugmentingPath#FORBIDDEN}
+     *             entries are forbidden).
+     */
+    public MurtyRanking(int cost[][]) {
+        if (cost.length > 64)
+            throw new IllegalArgumentException("Murty's ranking supports at most 64 rows");
+
+        this.cost = cost;
+        this.n = cost.length;
+        this.subCost = new int[n][n];
+        this.subAssignment = new int[n];
+        this.freeCols = new int[n];
+        this.usedCol = new boolean[n];
+
+        Node root = new Node(new int[n], new long[n], 0);
+        if (solve(root))
+            queue.add(root);
+    }
+
+    /**
+     * Writes the next best assignment (the column of each row) into {@param
+     * assignment} and returns its cost.
+     *
+     * @param assignment array that receives the assignment.
+     * @return the cost of the assignment or {@link AssignmentAlgorithm#INFEASIBLE}
+     * if all (feasible) assignments were already returned.
+     */
+    public long next(int assignment[]) {
+        Node node = queue.poll();
+        if (node == null)
+            return AssignmentAlgorithm.INFEASIBLE;
+
+        // partitioning the remaining assignments of the node
+        for (int t = node.nFixed; t < n - 1; t++) {
+            long excluded[] = node.excluded.clone();
+            excluded[t] |= 1L << node.assignment[t];
+
+            Node child = new Node(node.assignment.clone(), excluded, t);
+            if (solve(child))
+                queue.add(child);
+        }
+
+        System.arraycopy(node.assignment, 0, assignment, 0, n);
+        return node.cost;
+    }
+
+    /**
+     * Solves the subproblem of {@param node}: the first nFixed rows keep the
+     * columns of node.assignment and the other rows are re-assigned avoiding
+     * the excluded columns.
+     *
+     * @return true if the subproblem is feasible and false otherwise.
+     */
+    private boolean solve(Node node) {
+        Arrays.fill(usedCol, false);
+        long fixedCost = 0;
+        for (int i = 0; i < node.nFixed; i++) {
+            usedCol[node.assignment[i]] = true;
+            fixedCost += cost[i][node.assignment[i]];
+        }
+
+        int size = 0;
+        for (int j = 0; j < n; j++)
+            if (!usedCol[j])
+                freeCols[size++] = j;
+
+        for (int i = 0; i < size; i++) {
+            int row = node.nFixed + i;
+            for (int k = 0; k < size; k++) {
+                int col = freeCols[k];
+                subCost[i][k] = (node.excluded[row] & 1L << col) != 0 ? ShortestAugmentingPath.FORBIDDEN : cost[row][col];
+            }
+        }
+
+        long subproblemCost = assignmentAlgorithm.solve(subCost, size, size, subAssignment);
+        if (subproblemCost == AssignmentAlgorithm.INFEASIBLE)
+            return false;
+
+        for (int i = 0; i < size; i++)
+            node.assignment[node.nFixed + i] = freeCols[subAssignment[i]];
+        node.cost = fixedCost + subproblemCost;
+        return true;
+    }
+
+    /**
+     * Subproblem of the ranking (and its best assignment, once solved).
+     */
+    private static class Node {
+        final int assignment[];
+        final long excluded[];
+        final int nFixed;
+        long cost;
+
+        Node(int assignment[], long excluded[], int nFixed) {
+            this.assignment = assignment;
+            this.excluded = excluded;
+            this.nFixed = nFixed;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package be.kuleuven.codes.tup.heuristic.assignment;
+
+import java.util.*;
+
+/**
+ * Shortest augmenting path (Jonker-Volgenant style) algorithm for the
+ * assignment problem, with O(n^3) worst case complexity. Rows are inserted
+ * one at a time and each insertion finds a shortest augmenting path with
+ * Dijkstra's algorithm on the reduced costs given by the dual potentials.
+ * <p>
+ * Forbidden assignments are handled natively: entries equal to {@link
+ * #FORBIDDEN} are never used (they are not costs), and the problem is
+ * reported infeasible if no complete assignment avoids them. The cost matrix
+ * is never modified and all the work arrays belong to a {@link Workspace},
+ * which may be supplied by the caller and is reused by every solve, so that
+ * {@link #solve(int[][], int, int, int[])} does not allocate memory.
+ *
+ * @author Tulio Toffolo
+ */
+public class ShortestAugmentingPath implements AssignmentAlgorithm {
+
+    /**
+     * Entry of the cost matrix that indicates a forbidden assignment.
+     */
+    public static final int FORBIDDEN = Integer.MAX_VALUE;
+
+    private static final long INFINITY = Long.MAX_VALUE / 4;
+
+    private final Workspace workspace;
+
+
+    /**
+     * Instantiates a new solver with its own workspace.
+     */
+    public ShortestAugmentingPath() {
+        this(new Workspace());
+    }
+
+    /**
+     * Instantiates a new solver that uses {@param workspace}. Notice that a
+     * workspace must not be used by two solves at the same time.
+     *
+     * @param workspace the workspace of the solver.
+     */
+    public ShortestAugmentingPath(Workspace workspace) {
+        this.workspace = workspace;
+    }
+
+    /**
+     * Solves the assignment problem given by {@param costMatrix}, which is
+     * not modified, returning one {row, column} pair for each row (or for
+     * each column, if there are more rows than columns).
+     *
+     * @param costMatrix the cost matrix ({@link #FORBIDDEN} entries are
+     *                   forbidden).
+     * @return the assignments or null if there is no feasible assignment.
+     */
+    public int[][] computeAssignments(int[][] costMatrix) {
+        int nRows = costMatrix.length, nCols = costMatrix[0].length;
+        boolean transposed = nRows > nCols;
+        if (transposed) {
+            int transpose[][] = new int[nCols][nRows];
+            for (int i = 0; i < nRows; i++)
+                for (int j = 0; j < nCols; j++)
+                    transpose[j][i] = costMatrix[i][j];
+            costMatrix = transpose;
+            nRows = transpose.length;
+            nCols = transpose[0].length;
+        }
+
+        int assignment[] = new int[nRows];
+        if (solve(costMatrix, nRows, nCols, assignment) == INFEASIBLE)
+            return null;
+
+        int[][] assignments = new int[nRows][];
+        for (int i = 0; i < nRows; i++)
+            assignments[i] = transposed ? new int[]{ assignment[i], i } : new int[]{ i, assignment[i] };
+        return assignments;
+    }
+
+    /**
+     * Solves the assignment problem given by the first {@param nRows} rows and
+     * {@param nCols} columns of {@param cost} (with {@param nRows} <= {@param
+     * nCols}) without allocating memory (once the workspace is large enough).
+     *
+     * @param cost       the cost matrix ({@link #FORBIDDEN} entries are
+     *                   forbidden); it is not modified.
+     * @param nRows      the number of rows.
+     * @param nCols      the number of columns.
+     * @param assignment array that receives the column assigned to each row.
+     * @return the cost of the optimal assignment or {@link #INFEASIBLE} if
+     * there is no feasible assignment.
+     */
+    public long solve(int[][] cost, int nRows, int nCols, int assignment[]) {
+        Workspace w = workspace;
+        w.ensureCapacity(nCols + 1, nRows * nCols);
+        for (int i = 0; i < nRows; i++)
+            System.arraycopy(cost[i], 0, w.cost, i * nCols, nCols);
+
+        return solve(w, w.cost, 0, nRows, nCols, assignment, 0);
+    }
+
+    /**
+     * Solves {@param nMatrices} n x n assignment problems packed in {@param
+     * costs} (matrix k starts at position k * n * n, row by row), one at a
+     * time in the calling thread and with the workspace of the solver.
+     *
+     * @param costs       the packed cost matrices ({@link #FORBIDDEN} entries
+     *                    are forbidden); they are not modified.
+     * @param n           the dimension of the matrices.
+     * @param nMatrices   the number of matrices.
+     * @param assignments array that receives the column assigned to each row
+     *                    (the assignment of matrix k starts at position k *
+     *                    n).
+     * @param results     array that receives the cost of each matrix (or
+     *                    {@link #INFEASIBLE}).
+     */
+    public void solveBatch(int costs[], int n, int nMatrices, int assignments[], long results[]) {
+        workspace.ensureCapacity(n + 1, 0);
+        for (int k = 0; k < nMatrices; k++)
+            results[k] = solve(workspace, costs, k * n * n, n, n, assignments, k * n);
+    }
+
+    /**
+     * Solves the assignment problem stored row by row in {@param cost},
+     * starting at position {@param offset}, using workspace {@param w}.
+     */
+    private static long solve(Workspace w, int cost[], int offset, int nRows, int nCols, int assignment[], int assignmentOffset) {
+        assert nRows <= nCols : "the number of rows must not exceed the number of columns";
+
+        Arrays.fill(w.u, 0, nRows + 1, 0);
+        Arrays.fill(w.v, 0, nCols + 1, 0);
+        Arrays.fill(w.rowOfCol, 0, nCols + 1, 0);
+
+        // index 0 is a virtual column; row i and column j (1-based) correspond to row i-1 and column j-1 of the matrix
+        for (int row = 1; row <= nRows; row++) {
+            w.rowOfCol[0] = row;
+            int j0 = 0;
+            Arrays.fill(w.minv, 0, nCols + 1, INFINITY);
+            Arrays.fill(w.visited, 0, nCols + 1, false);
+
+            do {
+                w.visited[j0] = true;
+                int i0 = w.rowOfCol[j0], j1 = 0;
+                long delta = INFINITY;
+                int rowStart = offset + (i0 - 1) * nCols - 1;
+                for (int j = 1; j <= nCols; j++) {
+                    if (w.visited[j]) continue;
+
+                    if (cost[rowStart + j] != FORBIDDEN) {
+                        long current = cost[rowStart + j] - w.u[i0] - w.v[j];
+                        if (current < w.minv[j]) {
+                            w.minv[j] = current;
+                            w.way[j] = j0;
+                        }
+                    }
+                    if (w.minv[j] < delta) {
+                        delta = w.minv[j];
+                        j1 = j;
+                    }
+                }
+
+                // no augmenting path avoids the forbidden assignments
+                if (j1 == 0)
+                    return INFEASIBLE;
+
+                for (int j = 0; j <= nCols; j++) {
+                    if (w.visited[j]) {
+                        w.u[w.rowOfCol[j]] += delta;
+                        w.v[j] -= delta;
+                    }
+                    else if (w.minv[j] < INFINITY) {
+                        w.minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (w.rowOfCol[j0] != 0);
+
+            do {
+                int j1 = w.way[j0];
+                w.rowOfCol[j0] = w.rowOfCol[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        long total = 0;
+        for (int j = 1; j <= nCols; j++) {
+            if (w.rowOfCol[j] != 0) {
+                assignment[assignmentOffset + w.rowOfCol[j] - 1] = j - 1;
+                total += cost[offset + (w.rowOfCol[j] - 1) * nCols + j - 1];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Work arrays of the algorithm, which grow as needed and are reused by
+     * all solves.
+     */
+    public static class Workspace {
+        private long u[] = new long[0], v[] = new long[0], minv[] = new long[0];
+        private int rowOfCol[] = new int[0], way[] = new int[0], cost[] = new int[0];
+        private boolean visited[] = new boolean[0];
+
+        private void ensureCapacity(int size, int costSize) {
+            if (cost.length < costSize)
+                cost = new int[costSize];
+            if (u.length >= size)
+                return;
+
+            u = new long[size];
+            v = new long[size];
+            minv = new long[size];
+            rowOfCol = new int[size];
+            way = new int[size];
+            visited = new boolean[size];
+        }
+    }
+}
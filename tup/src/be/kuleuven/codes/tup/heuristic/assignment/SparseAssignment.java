@@ -0,0 +1,131 @@
+package be.kuleuven.codes.tup.heuristic.assignment;
+
+import java.util.*;
+
+/**
+ * Shortest augmenting path algorithm for the assignment problem on a sparse
+ * bipartite graph, given by the adjacency lists of the allowed (row, column)
+ * arcs (at most one arc per pair). Rows are inserted one at a time and each
+ * insertion runs Dijkstra's algorithm on the reduced costs, relaxing only the
+ * arcs of the rows reached.
+ * <p>
+ * Assignments without an arc are never considered (there is no "forbidden"
+ * cost, so no arithmetic is done with sentinel values), and infeasibility is
+ * reported explicitly when some row cannot be inserted. The work arrays
+ * belong to the instance and are reused by every solve.
+ *
+ * @author Tulio Toffolo
+ */
+public class SparseAssignment {
+
+    /**
+     * Cost returned when there is no assignment of all rows.
+     */
+    public static final long INFEASIBLE = AssignmentAlgorithm.INFEASIBLE;
+
+    private static final long INFINITY = Long.MAX_VALUE / 4;
+
+    private long u[] = new long[0], v[] = new long[0], minv[] = new long[0];
+    private int rowOfCol[] = new int[0], way[] = new int[0];
+    private boolean visited[] = new boolean[0];
+
+
+    /**
+     * Solves the n x n assignment problem whose arcs of row i are arcs
+     * {@param start}[i] to {@param start}[i+1]-1 of {@param cols} (columns)
+     * and {@param costs} (costs).
+     *
+     * @param n          the number of rows (and columns).
+     * @param start      the first arc of each row (with n+1 entries).
+     * @param cols       the column of each arc.
+     * @param costs      the cost of each arc.
+     * @param assignment array that receives the column assigned to each row.
+     * @return the cost of the optimal assignment or {@link #INFEASIBLE} if
+     * there is no assignment of all rows using the arcs.
+     */
+    public long solve(int n, int start[], int cols[], int costs[], int assignment[]) {
+        ensureCapacity(n + 1);
+        Arrays.fill(u, 0, n + 1, 0);
+        Arrays.fill(v, 0, n + 1, 0);
+        Arrays.fill(rowOfCol, 0, n + 1, 0);
+
+        // index 0 is a virtual column; row i and column j (1-based) correspond to row i-1 and column j-1
+        for (int row = 1; row <= n; row++) {
+            rowOfCol[0] = row;
+            int j0 = 0;
+            Arrays.fill(minv, 0, n + 1, INFINITY);
+            Arrays.fill(visited, 0, n + 1, false);
+
+            do {
+                visited[j0] = true;
+                int i0 = rowOfCol[j0];
+                for (int arc = start[i0 - 1]; arc < start[i0]; arc++) {
+                    int j = cols[arc] + 1;
+                    if (visited[j]) continue;
+
+                    long current = costs[arc] - u[i0] - v[j];
+                    if (current < minv[j]) {
+                        minv[j] = current;
+                        way[j] = j0;
+                    }
+                }
+
+                int j1 = 0;
+                long delta = INFINITY;
+                for (int j = 1; j <= n; j++) {
+                    if (!visited[j] && minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+
+                // no column reachable from the row: there is no complete assignment
+                if (j1 == 0)
+                    return INFEASIBLE;
+
+                for (int j = 0; j <= n; j++) {
+                    if (visited[j]) {
+                        u[rowOfCol[j]] += delta;
+                        v[j] -= delta;
+                    }
+                    else if (minv[j] < INFINITY) {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (rowOfCol[j0] != 0);
+
+            do {
+                int j1 = way[j0];
+                rowOfCol[j0] = rowOfCol[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        for (int j = 1; j <= n; j++)
+            assignment[rowOfCol[j] - 1] = j - 1;
+
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            for (int arc = start[i]; arc < start[i + 1]; arc++) {
+                if (cols[arc] == assignment[i]) {
+                    total += costs[arc];
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+
+    private void ensureCapacity(int size) {
+        if (u.length >= size)
+            return;
+
+        u = new long[size];
+        v = new long[size];
+        minv = new long[size];
+        rowOfCol = new int[size];
+        way = new int[size];
+        visited = new boolean[size];
+    }
+}
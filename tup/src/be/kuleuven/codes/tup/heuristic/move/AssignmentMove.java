@@ -3,12 +3,15 @@ package be.kuleuven.codes.tup.heuristic.move;
 import be.kuleuven.codes.tup.heuristic.assignment.*;
 import be.kuleuven.codes.tup.model.*;
 import be.kuleuven.codes.tup.model.solution.*;
+import be.kuleuven.codes.tup.useful.*;
 
 import java.util.*;
 
 public class AssignmentMove {
 
     private final Random r;
+    private final AssignmentAlgorithm assignmentAlgorithm = new AdaptiveAssignment();
+    private int distances[] = new int[0], homeRows[][] = new int[0][], teamRows[][] = new int[0][];
 
     public AssignmentMove(Random r) {
         this.r = r;
@@ -21,44 +24,68 @@ public class AssignmentMove {
     }
 
     public int[] performMove(Solution sol, int round) {
+        int m = sol.problem.nUmpires;
+        int costs[] = new int[m * m], assignment[] = new int[m];
+        long results[] = new long[1];
+
+        buildCostMatrix(sol, round, costs, 0);
+        assignmentAlgorithm.solveBatch(costs, m, 1, assignment, results);
+        return applyAssignment(sol, round, assignment, 0, results[0]);
+    }
+
+    public void buildCostMatrix(Solution sol, int round, int costs[], int offset) {
         //        System.out.println("ROUND_" + round);
 
         Problem problem = sol.problem;
 
-        int[][] costMatrix = new int[problem.nUmpires][problem.nUmpires];
+        if (distances.length < problem.nUmpires)
+            distances = new int[problem.nUmpires];
+        int nHomeRows = Math.min(problem.nRounds, round + problem.q1) - round;
+        int nTeamRows = Math.min(problem.nRounds, round + problem.q2) - round;
+        if (homeRows.length < nHomeRows)
+            homeRows = new int[nHomeRows][];
+        if (teamRows.length < nTeamRows)
+            teamRows = new int[nTeamRows][];
+        for (int ump = 0; ump < problem.nUmpires; ump++) {
+
+            int prevGame = -1;
+            if (round > 0) {
+                prevGame = sol.assignment[round - 1][ump];
+            }
+            int nextGame = -1;
+            if (round < problem.nRounds - 1) {
+                nextGame = sol.assignment[round + 1][ump];
+            }
+
+            //Calculate distances due to assignments (of all games)
+            buildDistances(problem, round, prevGame, nextGame, distances);
 
+            //Venues not visited by the umpire in the current solution
+            int visits[] = sol.visits[ump];
+            int assignedGame = sol.assignment[round][ump];
+            int oldVenue = problem.games[assignedGame][0] - 1;
+            int unvisitedVenues = 0;
+            for (int team = 0; team < problem.nTeams; team++) {
+                if (visits[team] == 0) unvisitedVenues++;
+            }
 
-        for (int ump = 0; ump < problem.nUmpires; ump++) {
+            //Counters of the rounds affected by the q1 and q2 windows of the round
+            for (int k = 0; k < nHomeRows; k++)
+                homeRows[k] = sol.homeVisits[round + k][ump];
+            for (int k = 0; k < nTeamRows; k++)
+                teamRows[k] = sol.teamVisits[round + k][ump];
 
             for (int game = 0; game < problem.nUmpires; game++) {
 
-                int prevGame = -1;
-                if (round > 0) {
-                    prevGame = sol.assignment[round - 1][ump];
-                }
                 int currentGame = problem.nUmpires * round + game;
                 int currentVenue = problem.games[currentGame][0] - 1;
-                int nextGame = -1;
-                if (round < problem.nRounds - 1) {
-                    nextGame = sol.assignment[round + 1][ump];
-                }
+                int distance = distances[game];
 
-                //Calculate distance due to assignment
-                int distance = 0;
-                if (prevGame != -1) {
-                    distance += problem.dist[problem.games[prevGame][0] - 1][currentVenue];
-                }
-                if (nextGame != -1) {
-                    distance += problem.dist[currentVenue][problem.games[nextGame][0] - 1];
-                }
-
-                //Calculate extra home visit violations due to assignment
-                int homeVisitViolations = 0;
-                int[] visits = Arrays.copyOf(sol.visits[ump], sol.visits[ump].length);
-                visits[problem.games[sol.assignment[round][ump]][0] - 1]--;
-                visits[currentVenue]++;
-                for (int team = 0; team < problem.nTeams; team++) {
-                    if (visits[team] == 0) homeVisitViolations++;
+                //Calculate extra home visit violations due to assignment (only the old and new venues change)
+                int homeVisitViolations = unvisitedVenues;
+                if (currentVenue != oldVenue) {
+                    if (visits[oldVenue] == 1) homeVisitViolations++;
+                    if (visits[currentVenue] == 0) homeVisitViolations--;
                 }
 
 
@@ -93,53 +120,60 @@ public class AssignmentMove {
                 //    }
                 //}
 
-                if (currentGame == sol.assignment[round][ump]) {
-                    for (int currentRound = round; currentRound < Math.min(problem.nRounds, round + problem.q1); currentRound++) {
-                        if (sol.homeVisits[currentRound][ump][currentVenue] == 2)
-                            consecutiveHomeVisitViolations++;
-                    }
-                    for (int currentRound = round; currentRound < Math.min(problem.nRounds, round + problem.q2); currentRound++) {
-                        if (sol.teamVisits[currentRound][ump][currentVenue] == 2)
-                            consecutiveTeamSeenViolations++;
-                        if (sol.teamVisits[currentRound][ump][otherTeam] == 2)
-                            consecutiveTeamSeenViolations++;
-                    }
+                //the counters of the current game of the umpire already include it
+                int seen = currentGame == assignedGame ? 2 : 1;
+                for (int k = 0; k < nHomeRows; k++) {
+                    if (homeRows[k][currentVenue] == seen)
+                        consecutiveHomeVisitViolations++;
                 }
-                else {
-                    for (int currentRound = round; currentRound < Math.min(problem.nRounds, round + problem.q1); currentRound++) {
-                        if (sol.homeVisits[currentRound][ump][currentVenue] == 1)
-                            consecutiveHomeVisitViolations++;
-                    }
-                    for (int currentRound = round; currentRound < Math.min(problem.nRounds, round + problem.q2); currentRound++) {
-                        if (sol.teamVisits[currentRound][ump][currentVenue] == 1)
-                            consecutiveTeamSeenViolations++;
-                        if (sol.teamVisits[currentRound][ump][otherTeam] == 1)
-                            consecutiveTeamSeenViolations++;
-                    }
+                for (int k = 0; k < nTeamRows; k++) {
+                    if (teamRows[k][currentVenue] == seen)
+                        consecutiveTeamSeenViolations++;
+                    if (teamRows[k][otherTeam] == seen)
+                        consecutiveTeamSeenViolations++;
                 }
                 //                System.out.println(ump + "_" + game + "_" + distance + "_" + homeVisitViolations + "_" + consecutiveHomeVisitViolations + "_"
                 //                        + consecutiveTeamSeenViolations);
-                costMatrix[ump][game] = distance
+                costs[offset + ump * problem.nUmpires + game] = distance
                   + Constants.penaltyWeight2 * homeVisitViolations
                   + Constants.penaltyWeight2 * consecutiveTeamSeenViolations
                   + Constants.penaltyWeight2 * consecutiveHomeVisitViolations;
 
             }
         }
+    }
 
-        HungarianAlgorithm hungarianAlgorithm = new HungarianAlgorithm();
-        int[][] assignments = hungarianAlgorithm.computeAssignments(costMatrix);
-        //        System.out.println("Before " + sol.getObjectiveCost());
+    /**
+     * Computes the travel distance of an umpire (whose previous and next
+     * games are {@param prevGame} and {@param nextGame}, or -1 if there is
+     * none) for each game of {@param round}, writing it into {@param
+     * distances}. The distances from the previous game are read from a row
+     * of the flattened game-to-game table.
+     */
+    public static void buildDistances(Problem problem, int round, int prevGame, int nextGame, int distances[]) {
+        int m = problem.nUmpires;
+        if (nextGame != -1) {
+            for (int game = 0; game < m; game++)
+                distances[game] = problem.distGames[round * m + game][nextGame];
+            if (prevGame != -1)
+                Kernels.INSTANCE.add(distances, 0, problem.distGames[prevGame], round * m, distances, 0, m);
+        }
+        else if (prevGame != -1) {
+            System.arraycopy(problem.distGames[prevGame], round * m, distances, 0, m);
+        }
+        else {
+            Arrays.fill(distances, 0, m, 0);
+        }
+    }
 
+    public int[] applyAssignment(Solution sol, int round, int assignments[], int offset, long cost) {
+        Problem problem = sol.problem;
         int[] newAss = new int[problem.nUmpires];
+        //        System.out.println("Before " + sol.getObjectiveCost());
 
-        if (assignments != null) {
-            for (int[] assignment : assignments) {
-                int ump = assignment[0];
-                int g = assignment[1] + round * problem.nUmpires;
-                newAss[ump] = g;
-                //                sol.assignValue(ump, g, round);
-            }
+        if (cost != AssignmentAlgorithm.INFEASIBLE) {
+            for (int ump = 0; ump < problem.nUmpires; ump++)
+                newAss[ump] = assignments[offset + ump] + round * problem.nUmpires;
             for (int ump = 0; ump < problem.nUmpires; ump++) {
                 sol.assignValue(ump, newAss[ump], round);
             }
@@ -9,42 +9,61 @@ import java.util.*;
 public class PartialAssignmentMove {
 
     private final Random r;
+    private final AssignmentAlgorithm assignmentAlgorithm = new AdaptiveAssignment();
+    private int distances[] = new int[0], homeRows[][] = new int[0][], teamRows[][] = new int[0][];
 
     public PartialAssignmentMove(Random r) {
         this.r = r;
     }
 
     public int[] performMove(Solution sol, int round, int firstRound, int lastRound) {
+        int m = sol.problem.nUmpires;
+        int costs[] = new int[m * m], assignment[] = new int[m];
+        long results[] = new long[1];
+
+        buildCostMatrix(sol, round, firstRound, lastRound, costs, 0);
+        assignmentAlgorithm.solveBatch(costs, m, 1, assignment, results);
+        return applyAssignment(sol, round, assignment, 0, results[0]);
+    }
+
+    public void buildCostMatrix(Solution sol, int round, int firstRound, int lastRound, int costs[], int offset) {
         //        System.out.println("ROUND_" + round);
 
         Problem problem = sol.problem;
 
-        int[][] costMatrix = new int[problem.nUmpires][problem.nUmpires];
+        if (distances.length < problem.nUmpires)
+            distances = new int[problem.nUmpires];
+        int nHomeRows = Math.min(lastRound + 1, round + problem.q1) - round;
+        int nTeamRows = Math.min(lastRound + 1, round + problem.q2) - round;
+        if (homeRows.length < nHomeRows)
+            homeRows = new int[nHomeRows][];
+        if (teamRows.length < nTeamRows)
+            teamRows = new int[nTeamRows][];
+        for (int ump = 0; ump < problem.nUmpires; ump++) {
 
+            int prevGame = -1;
+            if (round > firstRound) {
+                prevGame = sol.assignment[round - 1][ump];
+            }
+            int nextGame = -1;
+            if (round < lastRound) {
+                nextGame = sol.assignment[round + 1][ump];
+            }
 
-        for (int ump = 0; ump < problem.nUmpires; ump++) {
+            //Calculate distances due to assignments (of all games)
+            AssignmentMove.buildDistances(problem, round, prevGame, nextGame, distances);
+
+            //Counters of the rounds affected by the q1 and q2 windows of the round
+            for (int k = 0; k < nHomeRows; k++)
+                homeRows[k] = sol.homeVisits[round + k][ump];
+            for (int k = 0; k < nTeamRows; k++)
+                teamRows[k] = sol.teamVisits[round + k][ump];
 
             for (int game = 0; game < problem.nUmpires; game++) {
 
-                int prevGame = -1;
-                if (round > firstRound) {
-                    prevGame = sol.assignment[round - 1][ump];
-                }
                 int currentGame = problem.nUmpires * round + game;
                 int currentVenue = problem.games[currentGame][0] - 1;
-                int nextGame = -1;
-                if (round < lastRound) {
-                    nextGame = sol.assignment[round + 1][ump];
-                }
-
-                //Calculate distance due to assignment
-                int distance = 0;
-                if (prevGame != -1) {
-                    distance += problem.dist[problem.games[prevGame][0] - 1][currentVenue];
-                }
-                if (nextGame != -1) {
-                    distance += problem.dist[currentVenue][problem.games[nextGame][0] - 1];
-                }
+                int distance = distances[game];
 
                 //Calculate extra home visit violations due to assignment
                 //int homeVisitViolations = 0;
@@ -87,48 +106,33 @@ public class PartialAssignmentMove {
                 //    }
                 //}
 
-                if (currentGame == sol.assignment[round][ump]) {
-                    for (int currentRound = round; currentRound < Math.min(lastRound + 1, round + problem.q1); currentRound++) {
-                        if (sol.homeVisits[currentRound][ump][currentVenue] == 2)
-                            consecutiveHomeVisitViolations++;
-                    }
-                    for (int currentRound = round; currentRound < Math.min(lastRound + 1, round + problem.q2); currentRound++) {
-                        if (sol.teamVisits[currentRound][ump][currentVenue] == 2)
-                            consecutiveTeamSeenViolations++;
-                        if (sol.teamVisits[currentRound][ump][otherTeam] == 2)
-                            consecutiveTeamSeenViolations++;
-                    }
+                //the counters of the current game of the umpire already include it
+                int seen = currentGame == sol.assignment[round][ump] ? 2 : 1;
+                for (int k = 0; k < nHomeRows; k++) {
+                    if (homeRows[k][currentVenue] == seen)
+                        consecutiveHomeVisitViolations++;
                 }
-                else {
-                    for (int currentRound = round; currentRound < Math.min(lastRound + 1, round + problem.q1); currentRound++) {
-                        if (sol.homeVisits[currentRound][ump][currentVenue] == 1)
-                            consecutiveHomeVisitViolations++;
-                    }
-                    for (int currentRound = round; currentRound < Math.min(lastRound + 1, round + problem.q2); currentRound++) {
-                        if (sol.teamVisits[currentRound][ump][currentVenue] == 1)
-                            consecutiveTeamSeenViolations++;
-                        if (sol.teamVisits[currentRound][ump][otherTeam] == 1)
-                            consecutiveTeamSeenViolations++;
-                    }
+                for (int k = 0; k < nTeamRows; k++) {
+                    if (teamRows[k][currentVenue] == seen)
+                        consecutiveTeamSeenViolations++;
+                    if (teamRows[k][otherTeam] == seen)
+                        consecutiveTeamSeenViolations++;
                 }
-                costMatrix[ump][game] = distance
+                costs[offset + ump * problem.nUmpires + game] = distance
                   + Constants.penaltyWeight2 * consecutiveTeamSeenViolations
                   + Constants.penaltyWeight2 * consecutiveHomeVisitViolations;
 
             }
         }
+    }
 
-        HungarianAlgorithm hungarianAlgorithm = new HungarianAlgorithm();
-        int[][] assignments = hungarianAlgorithm.computeAssignments(costMatrix);
-
+    public int[] applyAssignment(Solution sol, int round, int assignments[], int offset, long cost) {
+        Problem problem = sol.problem;
         int[] newAss = new int[problem.nUmpires];
 
-        if (assignments != null) {
-            for (int[] assignment : assignments) {
-                int ump = assignment[0];
-                int g = assignment[1] + round * problem.nUmpires;
-                newAss[ump] = g;
-            }
+        if (cost != AssignmentAlgorithm.INFEASIBLE) {
+            for (int ump = 0; ump < problem.nUmpires; ump++)
+                newAss[ump] = assignments[offset + ump] + round * problem.nUmpires;
             for (int ump = 0; ump < problem.nUmpires; ump++) {
                 sol.assignValue(ump, newAss[ump], round);
             }
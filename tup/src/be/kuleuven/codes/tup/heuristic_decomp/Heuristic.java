@@ -1,8 +1,11 @@
 package be.kuleuven.codes.tup.heuristic_decomp;
 
+import be.kuleuven.codes.tup.heuristic.assignment.*;
 import be.kuleuven.codes.tup.model.*;
 import be.kuleuven.codes.tup.model.solution.*;
 
+import java.util.*;
+
 /**
  * This class implements the decomposition-based heuristic included in the
  * thesis of Tulio Toffolo.
@@ -131,9 +134,63 @@ public class Heuristic {
             if (nBacktracks++ >= maxBacktracks) return false;
         }
 
+        // cheap alternatives: the best complete assignments of this round alone
+        if (round > 0) {
+            for (SimplePartialSolution partialSolution : rankRound(round, maxSolutions)) {
+                if (System.currentTimeMillis() >= maxTimeLimitMillis) return false;
+
+                addAssignments(solution, partialSolution);
+                if (constructive(round + 1)) return true;
+                removeAssignments(solution, partialSolution);
+
+                if (nBacktracks++ >= maxBacktracks) return false;
+            }
+        }
+
         return false;
     }
 
+    /**
+     * Returns (up to) the {@param k} best complete assignments of {@param
+     * round}, given the assignments of the previous rounds in the current
+     * solution, as partial solutions. The assignments are ranked with Murty's
+     * algorithm ({@link MurtyRanking}) and respect the q1/q2 constraints.
+     */
+    private SimplePartialSolution[] rankRound(int round, int k) {
+        int m = problem.nUmpires;
+        int costs[][] = new int[m][m];
+        for (int u = 0; u < m; u++) {
+            for (int i = 0; i < m; i++) {
+                int game = round * m + i;
+                costs[u][i] = canAssign(u, game, round) ? problem.distGames[solution.colorsRounds[u][round - 1]][game] : ShortestAugmentingPath.FORBIDDEN;
+            }
+        }
+
+        List<SimplePartialSolution> partialSolutions = new ArrayList<>();
+        MurtyRanking ranking = new MurtyRanking(costs);
+        int assignment[] = new int[m];
+        while (partialSolutions.size() < k && ranking.next(assignment) != AssignmentAlgorithm.INFEASIBLE) {
+            SimplePartialSolution partialSolution = new SimplePartialSolution(problem, round, round);
+            for (int u = 0; u < m; u++)
+                partialSolution.setColor(round * m + assignment[u], u);
+            partialSolutions.add(partialSolution);
+        }
+        return partialSolutions.toArray(new SimplePartialSolution[0]);
+    }
+
+    private boolean canAssign(int umpire, int game, int round) {
+        for (int r = Math.max(0, round - problem.q1 + 1); r < round; r++)
+            if (problem.games[solution.colorsRounds[umpire][r]][0] == problem.games[game][0])
+                return false;
+
+        for (int r = Math.max(0, round - problem.q2 + 1); r < round; r++)
+            for (int team : problem.games[solution.colorsRounds[umpire][r]])
+                if (team == problem.games[game][0] || team == problem.games[game][1])
+                    return false;
+
+        return true;
+    }
+
     private SimpleSolution localSearch(SimpleSolution solution) {
         long initialTime = System.currentTimeMillis();
         int n = 4, step = 1;
@@ -0,0 +1,90 @@
+package be.kuleuven.codes.tup.model;
+
+/**
+ * Index of the pairs of games of consecutive rounds that can be assigned to
+ * the same umpire, i.e. that do not violate the q1/q2 constraints. For each
+ * round r (except the last one) and each game i of r (index within the
+ * round), the compatible games j of round r+1 are stored as adjacency lists
+ * in compressed form: arcs start[r][i] to start[r][i+1]-1 of next[r] (games
+ * of r+1) and distance[r] (distance between the venues of the games).
+ *
+ * @author Tulio Toffolo
+ */
+public class CompatibilityIndex {
+
+    public final int start[][], next[][], distance[][];
+
+    private final boolean compatible[][][];
+
+
+    /**
+     * Instantiates the index of a problem.
+     *
+     * @param problem the TUP problem instance.
+     */
+    public CompatibilityIndex(Problem problem) {
+        int m = problem.nUmpires, nRounds = problem.nRounds;
+        start = new int[Math.max(0, nRounds - 1)][m + 1];
+        next = new int[start.length][];
+        distance = new int[start.length][];
+        compatible = new boolean[start.length][m][m];
+
+        for (int round = 0; round < start.length; round++) {
+            int nArcs = 0;
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < m; j++) {
+                    compatible[round][i][j] = isCompatible(problem, round * m + i, (round + 1) * m + j);
+                    if (compatible[round][i][j])
+                        nArcs++;
+                }
+            }
+
+            next[round] = new int[nArcs];
+            distance[round] = new int[nArcs];
+            for (int i = 0, arc = 0; i < m; i++) {
+                start[round][i] = arc;
+                for (int j = 0; j < m; j++) {
+                    if (compatible[round][i][j]) {
+                        next[round][arc] = j;
+                        distance[round][arc] = problem.distGames[round * m + i][(round + 1) * m + j];
+                        arc++;
+                    }
+                }
+            }
+            start[round][m] = nArcs;
+        }
+    }
+
+    /**
+     * Returns whether the i-th game of {@param round} and the j-th game of
+     * the next round can be assigned to the same umpire.
+     *
+     * @param round the round of the first game.
+     * @param i     the index of the game in {@param round}.
+     * @param j     the index of the game in the next round.
+     * @return true if the games are compatible and false otherwise.
+     */
+    public boolean isCompatible(int round, int i, int j) {
+        return compatible[round][i][j];
+    }
+
+    /**
+     * Returns the number of compatible pairs of games of {@param round} and
+     * the next round.
+     *
+     * @param round the round.
+     * @return the number of compatible pairs.
+     */
+    public int getNArcs(int round) {
+        return next[round].length;
+    }
+
+    private static boolean isCompatible(Problem problem, int g, int g2) {
+        int games[][] = problem.games;
+        if (problem.q2 > 1 && (games[g][0] == games[g2][0] || games[g][1] == games[g2][1]
+          || games[g][0] == games[g2][1] || games[g][1] == games[g2][0]))
+            return false;
+
+        return !(problem.q1 > 1 && games[g][0] == games[g2][0]);
+    }
+}
@@ -27,6 +27,8 @@ public class Problem {
 
     public int teamTravelDistance;
 
+    private CompatibilityIndex compatibilityIndex;
+
 
     public Problem(int nTeams, int[][] dist, int[][] opponents, int q1, int q2, String name) {
         this.nTeams = nTeams;
@@ -89,7 +91,42 @@ public class Problem {
     }
 
 
+    /**
+     * Returns the problem with the rounds in reverse order, so that round r
+     * becomes round nRounds-1-r (and the i-th game of a round remains the i-th
+     * game). Distances are transposed, so that the travel distance of any
+     * (reversed) solution is preserved.
+     *
+     * @return the reversed problem.
+     */
+    public Problem reverse() {
+        int[][] reversedDist = new int[nTeams][nTeams];
+        for (int i = 0; i < nTeams; i++)
+            for (int j = 0; j < nTeams; j++)
+                reversedDist[i][j] = dist[j][i];
+
+        int[][] reversedOpponents = new int[nRounds][];
+        for (int round = 0; round < nRounds; round++)
+            reversedOpponents[round] = opponents[nRounds - 1 - round].clone();
+
+        return new Problem(nTeams, reversedDist, reversedOpponents, q1, q2, name);
+    }
+
+    /**
+     * Returns the index of the pairs of games of consecutive rounds that can
+     * be assigned to the same umpire (built on the first call and shared by
+     * all callers).
+     *
+     * @return the compatibility index of the problem.
+     */
+    public synchronized CompatibilityIndex getCompatibilityIndex() {
+        if (compatibilityIndex == null)
+            compatibilityIndex = new CompatibilityIndex(this);
+        return compatibilityIndex;
+    }
+
     public void setTournament(int[][] opponents) {
+        compatibilityIndex = null;
         games = new int[nGames][2];
         gameToRound = new int[nGames];
 
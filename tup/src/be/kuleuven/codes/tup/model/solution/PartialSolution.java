@@ -74,11 +74,11 @@ public class PartialSolution extends Solution {
         int venue = problem.games[currentgame][0] - 1;
         int otherTeam = problem.games[currentgame][1] - 1;
 
-        if (round > 0) {
+        if (round > firstRound) {
             travelDistance += problem.dist[problem.games[assignment[round - 1][umpire]][0] - 1][venue];
             umpireDistances[umpire] += problem.dist[problem.games[assignment[round - 1][umpire]][0] - 1][venue];
         }
-        if (round < problem.nRounds - 1) {
+        if (round < lastRound) {
             travelDistance += problem.dist[venue][problem.games[assignment[round + 1][umpire]][0] - 1];
             umpireDistances[umpire] += problem.dist[venue][problem.games[assignment[round + 1][umpire]][0] - 1];
         }
@@ -172,6 +172,18 @@ public class PartialSolution extends Solution {
         }
     }
 
+    public long getObjectiveCost(int round, int games[], int offset) {
+        long cost = getObjectiveCost();
+        for (int umpire = 0; umpire < problem.nUmpires; umpire++) {
+            int currentGame = assignment[round][umpire], newGame = round * problem.nUmpires + games[offset + umpire];
+            if (currentGame == newGame) continue;
+
+            cost += getTravelDistanceDelta(umpire, round, currentGame, newGame, round > firstRound, round < lastRound)
+              + Constants.penaltyWeight * getConsecutiveDelta(umpire, round, currentGame, newGame, lastRound + 1);
+        }
+        return cost;
+    }
+
     public int getDistance() {
         return travelDistance;
     }
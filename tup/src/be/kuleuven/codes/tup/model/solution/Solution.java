@@ -395,6 +395,105 @@ public class Solution {
           + newDistance - umpireDistances[umpire];
     }
 
+    /**
+     * Returns the objective cost of the solution obtained by assigning the
+     * {@param games}[offset + ump]-th game of {@param round} to each umpire ump
+     * (i.e. an assignment of the cost matrix of the round), without modifying
+     * this solution. All counters are kept per umpire, so the change
+     * of each umpire is evaluated independently against the current counters
+     * and the result equals the cost obtained with {@link #assignValue(int,
+     * int, int)}. The score must have been calculated; the method only reads
+     * the solution and may be called concurrently.
+     *
+     * @param round  the round whose assignment is replaced.
+     * @param games  array with the indices (within the round) of the new
+     *               games of the umpires.
+     * @param offset position of the game of the first umpire in {@param games}.
+     * @return the objective cost of the resulting solution.
+     */
+    public long getObjectiveCost(int round, int games[], int offset) {
+        long cost = getObjectiveCost();
+        for (int umpire = 0; umpire < problem.nUmpires; umpire++) {
+            int currentGame = assignment[round][umpire], newGame = round * problem.nUmpires + games[offset + umpire];
+            if (currentGame == newGame) continue;
+
+            cost += getTravelDistanceDelta(umpire, round, currentGame, newGame, round > 0, round < problem.nRounds - 1)
+              + Constants.penaltyWeight * getHomeVisitDelta(umpire, currentGame, newGame)
+              + Constants.penaltyWeight * getConsecutiveDelta(umpire, round, currentGame, newGame, problem.nRounds);
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the change in the travel distance of {@param umpire} if its game
+     * in {@param round} is replaced by {@param newGame}.
+     */
+    protected int getTravelDistanceDelta(int umpire, int round, int currentGame, int newGame, boolean hasPrevious, boolean hasNext) {
+        int currentVenue = problem.games[currentGame][0] - 1;
+        int newVenue = problem.games[newGame][0] - 1;
+
+        int delta = 0;
+        if (hasPrevious) {
+            int previousVenue = problem.games[assignment[round - 1][umpire]][0] - 1;
+            delta += problem.dist[previousVenue][newVenue] - problem.dist[previousVenue][currentVenue];
+        }
+        if (hasNext) {
+            int nextVenue = problem.games[assignment[round + 1][umpire]][0] - 1;
+            delta += problem.dist[newVenue][nextVenue] - problem.dist[currentVenue][nextVenue];
+        }
+        return delta;
+    }
+
+    /**
+     * Returns the change in the number of venues not visited by {@param umpire}
+     * if {@param currentGame} is replaced by {@param newGame}.
+     */
+    protected int getHomeVisitDelta(int umpire, int currentGame, int newGame) {
+        int currentVenue = problem.games[currentGame][0] - 1;
+        int newVenue = problem.games[newGame][0] - 1;
+        if (currentVenue == newVenue)
+            return 0;
+
+        return (visits[umpire][currentVenue] == 1 ? 1 : 0) - (visits[umpire][newVenue] == 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns the change in the number of q1 and q2 violations of {@param
+     * umpire} if its game in {@param round} is replaced by {@param newGame},
+     * considering the counters of the rounds before {@param endRound}.
+     */
+    protected int getConsecutiveDelta(int umpire, int round, int currentGame, int newGame, int endRound) {
+        int currentVenue = problem.games[currentGame][0] - 1, currentOtherTeam = problem.games[currentGame][1] - 1;
+        int newVenue = problem.games[newGame][0] - 1, newOtherTeam = problem.games[newGame][1] - 1;
+
+        int delta = 0;
+        if (currentVenue != newVenue) {
+            for (int currentRound = round; currentRound < Math.min(endRound, round + problem.q1); currentRound++) {
+                if (homeVisits[currentRound][umpire][currentVenue] == 2)
+                    delta--;
+                if (homeVisits[currentRound][umpire][newVenue] == 1)
+                    delta++;
+            }
+        }
+
+        for (int currentRound = round; currentRound < Math.min(endRound, round + problem.q2); currentRound++) {
+            int counts[] = teamVisits[currentRound][umpire];
+            delta += getTeamSeenDelta(counts, currentVenue, currentVenue, currentOtherTeam, newVenue, newOtherTeam)
+              + getTeamSeenDelta(counts, currentOtherTeam, currentVenue, currentOtherTeam, newVenue, newOtherTeam);
+            if (newVenue != currentVenue && newVenue != currentOtherTeam)
+                delta += getTeamSeenDelta(counts, newVenue, currentVenue, currentOtherTeam, newVenue, newOtherTeam);
+            if (newOtherTeam != currentVenue && newOtherTeam != currentOtherTeam)
+                delta += getTeamSeenDelta(counts, newOtherTeam, currentVenue, currentOtherTeam, newVenue, newOtherTeam);
+        }
+        return delta;
+    }
+
+    private static int getTeamSeenDelta(int counts[], int team, int currentVenue, int currentOtherTeam, int newVenue, int newOtherTeam) {
+        int newCount = counts[team] - (team == currentVenue ? 1 : 0) - (team == currentOtherTeam ? 1 : 0)
+          + (team == newVenue ? 1 : 0) + (team == newOtherTeam ? 1 : 0);
+        return (newCount > 1 ? 1 : 0) - (counts[team] > 1 ? 1 : 0);
+    }
+
     public void calculateScore() {
         calculateTravelDistance();
         calculateHomeVisitViolations();
@@ -0,0 +1,88 @@
+package be.kuleuven.codes.tup.thread;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Delivers events asynchronously in a dedicated (daemon) thread. Events are
+ * kept in a bounded queue and dropped when it is full, so that a slow
+ * consumer never stalls the threads producing the events.
+ *
+ * @author Tulio Toffolo
+ */
+public class EventDispatcher {
+
+    private final BlockingQueue<Runnable> queue;
+    private final Thread thread;
+    private final AtomicLong nDropped = new AtomicLong(0);
+
+    private volatile boolean stopped = false;
+
+    /**
+     * Instantiates a new dispatcher and starts its thread.
+     *
+     * @param name     the name of the dispatcher thread.
+     * @param capacity the maximum number of pending events.
+     */
+    public EventDispatcher(String name, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Enqueues {@param event} to be run by the dispatcher thread, without
+     * blocking. The event is dropped if the queue is full or the dispatcher
+     * was shut down.
+     *
+     * @param event the event to be delivered.
+     * @return true if the event was enqueued and false if it was dropped.
+     */
+    public boolean post(Runnable event) {
+        if (stopped || !queue.offer(event)) {
+            nDropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of events dropped so far.
+     *
+     * @return the number of dropped events.
+     */
+    public long getNDropped() {
+        return nDropped.get();
+    }
+
+    /**
+     * Stops accepting events and waits up to {@param timeoutMillis}
+     * milliseconds for the pending ones to be delivered; the dispatcher
+     * thread is interrupted afterwards.
+     *
+     * @param timeoutMillis the maximum time to wait, in milliseconds.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        stopped = true;
+        thread.join(timeoutMillis);
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                Runnable event = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (event != null)
+                    event.run();
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@ public class SequentialExecutor extends ThreadExecutor {
 
     public synchronized void setCorePoolSize(int value) { }
 
+    public synchronized void setPoolSize(int nThreads) { }
+
     public boolean hasEmptySlot() {
         return false;
     }
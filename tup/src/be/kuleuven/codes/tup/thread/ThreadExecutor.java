@@ -48,6 +48,22 @@ public class ThreadExecutor extends ThreadPoolExecutor {
     }
 
 
+    /**
+     * Changes the number of threads of the pool, setting the core and the
+     * maximum pool sizes in the order required by ThreadPoolExecutor (the
+     * core size can never exceed the maximum size).
+     */
+    public synchronized void setPoolSize(int nThreads) {
+        if (nThreads > getMaximumPoolSize()) {
+            setMaximumPoolSize(nThreads);
+            setCorePoolSize(nThreads);
+        }
+        else {
+            setCorePoolSize(nThreads);
+            setMaximumPoolSize(nThreads);
+        }
+    }
+
     public void incrementCounter() {
         counter.incrementAndGet();
     }
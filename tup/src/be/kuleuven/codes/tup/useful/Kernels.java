@@ -0,0 +1,70 @@
+package be.kuleuven.codes.tup.useful;
+
+/**
+ * Loops over int arrays (element-wise sums and masking) used to build cost
+ * matrices. This class contains the scalar implementations; when the JDK
+ * Vector API is available (JDK 16+ started with --add-modules
+ * jdk.incubator.vector) and the optional class {@code VectorKernels} (source
+ * folder src-vector) is in the classpath, {@link #INSTANCE} uses SIMD
+ * implementations instead.
+ * <p>
+ * The scalar backend may be forced with the system property {@code
+ * tup.kernels=scalar}.
+ *
+ * @author Tulio Toffolo
+ */
+public class Kernels {
+
+    /**
+     * The kernels used by the solver: the vectorized ones if they can be
+     * loaded, and the scalar ones otherwise.
+     */
+    public static final Kernels INSTANCE = load();
+
+    private static final String VECTOR_CLASS = "be.kuleuven.codes.tup.useful.VectorKernels";
+
+
+    /**
+     * Returns the name of the backend.
+     *
+     * @return the name of the backend.
+     */
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Computes dst[dstOffset+k] = a[aOffset+k] + b[bOffset+k] for k in
+     * [0,length).
+     */
+    public void add(int dst[], int dstOffset, int a[], int aOffset, int b[], int bOffset, int length) {
+        for (int k = 0; k < length; k++)
+            dst[dstOffset + k] = a[aOffset + k] + b[bOffset + k];
+    }
+
+    /**
+     * Computes dst[dstOffset+k] = mask[maskOffset+k] ? a[aOffset+k] : {@param
+     * value} for k in [0,length), e.g. to replace forbidden assignments by a
+     * penalty.
+     */
+    public void select(int dst[], int dstOffset, int a[], int aOffset, boolean mask[], int maskOffset, int value, int length) {
+        for (int k = 0; k < length; k++)
+            dst[dstOffset + k] = mask[maskOffset + k] ? a[aOffset + k] : value;
+    }
+
+    /**
+     * Loads the vectorized kernels, falling back to the scalar ones if they
+     * are missing or the Vector API is not available.
+     */
+    private static Kernels load() {
+        if ("scalar".equals(System.getProperty("tup.kernels")))
+            return new Kernels();
+
+        try {
+            return ( Kernels ) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            return new Kernels();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package be.kuleuven.codes.tup.useful;
+
+/**
+ * Bounded map (cache) from (positive) long keys to non-negative int values,
+ * in which values must be a function of the keys, so that entries may be
+ * evicted or lost at any time.
+ *
+ * @author Tulio Toffolo
+ */
+public interface LongIntCache {
+
+    /**
+     * Returns the value associated with {@param key} or {@param missing} if
+     * the cache does not contain the key.
+     *
+     * @param key     the (positive) key.
+     * @param missing the value returned if the key is not found.
+     * @return the value associated with {@param key} or {@param missing}.
+     */
+    int get(long key, int missing);
+
+    /**
+     * Associates {@param value} with {@param key}, possibly evicting other
+     * entries.
+     *
+     * @param key   the (positive) key.
+     * @param value the (non-negative) value.
+     * @return true if the entry was inserted and false otherwise.
+     */
+    boolean put(long key, int value);
+
+    /**
+     * Returns the fraction of lookups that found their key.
+     *
+     * @return the hit rate of the cache.
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of entries evicted.
+     *
+     * @return the number of entries evicted.
+     */
+    long getNEvictions();
+}
@@ -0,0 +1,197 @@
+package be.kuleuven.codes.tup.useful;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Concurrent bounded hash map (cache) from (positive) long keys to
+ * non-negative int values stored in primitive arrays, so that neither lookups
+ * nor insertions create objects. The table is divided in buckets of {@link
+ * #BUCKET_SIZE} slots and each key may only be stored in its bucket; when the
+ * bucket is full, an entry is evicted with the CLOCK policy (entries read
+ * since the hand last passed are spared once).
+ * <p>
+ * Reads are lock-free. A writer claims a slot by replacing its key with a
+ * BUSY marker (CAS), increments the version of the slot, writes the value and
+ * only then publishes the new key. Readers check that the version did not
+ * change while they read the key and the value, so they never return the
+ * value of a different key, even if the slot is rewritten and its key is
+ * published again in between (ABA). Values must be a function of the keys,
+ * since duplicate insertions of a key are not prevented.
+ *
+ * @author Tulio Toffolo
+ */
+public class LongIntHashMap implements LongIntCache {
+
+    /**
+     * Bytes used by each slot (one long key, one int value, one int version
+     * and one byte reference bit).
+     */
+    public static final int BYTES_PER_SLOT = 17;
+
+    /**
+     * Number of slots of each bucket.
+     */
+    public static final int BUCKET_SIZE = 8;
+
+    private static final long EMPTY = 0, BUSY = -1;
+
+    private final AtomicLongArray keys;
+    private final AtomicIntegerArray values, versions;
+    private final byte referenced[], hands[];
+    private final int bucketMask;
+
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final LongAdder nHits = new LongAdder(), nMisses = new LongAdder();
+    private final AtomicLong nEvictions = new AtomicLong(0);
+
+
+    /**
+     * Instantiates a new map using at most {@param maxBytes} bytes. The number
+     * of buckets is the largest power of two that fits in this memory.
+     *
+     * @param maxBytes the maximum memory (in bytes) used by the map.
+     */
+    public LongIntHashMap(long maxBytes) {
+        long nBuckets = Long.highestOneBit(Math.max(1, Math.min(maxBytes / (BYTES_PER_SLOT * BUCKET_SIZE), 1 << 26)));
+        int slots = ( int ) nBuckets * BUCKET_SIZE;
+
+        this.keys = new AtomicLongArray(slots);
+        this.values = new AtomicIntegerArray(slots);
+        this.versions = new AtomicIntegerArray(slots);
+        this.referenced = new byte[slots];
+        this.hands = new byte[( int ) nBuckets];
+        this.bucketMask = ( int ) nBuckets - 1;
+    }
+
+    /**
+     * Returns the value associated with {@param key} or {@param missing} if
+     * the map does not contain the key.
+     *
+     * @param key     the (positive) key.
+     * @param missing the value returned if the key is not found.
+     * @return the value associated with {@param key} or {@param missing}.
+     */
+    @Override
+    public int get(long key, int missing) {
+        int first = (hash(key) & bucketMask) * BUCKET_SIZE;
+        for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+            int version = versions.get(slot);
+            if (keys.get(slot) == key) {
+                int value = values.get(slot);
+                if (versions.get(slot) != version)
+                    break;
+
+                referenced[slot] = 1;
+                nHits.increment();
+                return value;
+            }
+        }
+
+        nMisses.increment();
+        return missing;
+    }
+
+    /**
+     * Associates {@param value} with {@param key}, evicting an entry of the
+     * bucket of the key if it is full. The insertion is skipped if it
+     * conflicts with concurrent insertions in the same bucket.
+     *
+     * @param key   the (positive) key.
+     * @param value the value.
+     * @return true if the entry was inserted and false otherwise.
+     */
+    @Override
+    public boolean put(long key, int value) {
+        int bucket = hash(key) & bucketMask;
+        int first = bucket * BUCKET_SIZE;
+
+        // trying an empty slot first
+        for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+            long current = keys.get(slot);
+            if (current == key)
+                return false;
+            if (current == EMPTY && keys.compareAndSet(slot, EMPTY, BUSY)) {
+                publish(slot, key, value);
+                size.incrementAndGet();
+                return true;
+            }
+        }
+
+        // CLOCK: the hand clears reference bits until it finds a slot not referenced
+        for (int step = 0; step < 2 * BUCKET_SIZE; step++) {
+            int hand = hands[bucket];
+            hands[bucket] = ( byte ) ((hand + 1) % BUCKET_SIZE);
+
+            int slot = first + hand;
+            if (referenced[slot] != 0) {
+                referenced[slot] = 0;
+                continue;
+            }
+
+            long current = keys.get(slot);
+            if (current != BUSY && current != EMPTY && keys.compareAndSet(slot, current, BUSY)) {
+                publish(slot, key, value);
+                nEvictions.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return the number of entries in the map.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the fraction of lookups that found their key.
+     *
+     * @return the hit rate of the map.
+     */
+    @Override
+    public double getHitRate() {
+        long hits = nHits.sum(), total = hits + nMisses.sum();
+        return total > 0 ? hits / ( double ) total : 0;
+    }
+
+    /**
+     * Returns the number of entries evicted.
+     *
+     * @return the number of entries evicted.
+     */
+    @Override
+    public long getNEvictions() {
+        return nEvictions.get();
+    }
+
+    /**
+     * Writes the value of a claimed slot and then publishes its key. The
+     * version is incremented before the value changes, so that readers of the
+     * previous key detect the rewrite.
+     */
+    private void publish(int slot, long key, int value) {
+        versions.incrementAndGet(slot);
+        values.set(slot, value);
+        referenced[slot] = 0;
+        keys.set(slot, key);
+    }
+
+    /**
+     * Mixes the bits of {@param key} (MurmurHash3 finalizer).
+     *
+     * @param key the key.
+     * @return the hash of the key.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return ( int ) key;
+    }
+}
@@ -0,0 +1,292 @@
+package be.kuleuven.codes.tup.useful;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Bounded hash map (cache) from (positive) long keys to non-negative int
+ * values stored in a memory-mapped file, so that the entries are reused by
+ * later runs and shared by concurrent processes on the same machine. Records
+ * are read directly from the mapped pages (no deserialization).
+ * <p>
+ * The file starts with a header (magic number, format version, bucket size,
+ * fingerprint of the data and number of buckets) followed by buckets of
+ * {@link #BUCKET_SIZE} records of {@link #RECORD_BYTES} bytes (key, value
+ * and checksum). Writers do not lock the table: the value and checksum are
+ * written before the key, and readers ignore records whose checksum does not
+ * match, so a record torn by a concurrent writer (of this or of another
+ * process) is simply a miss. When a bucket is full, the record selected by
+ * the key is replaced.
+ *
+ * @author Tulio Toffolo
+ */
+public class MappedLongIntHashMap implements LongIntCache {
+
+    /**
+     * Bytes used by each record (one long key, one int value and one int
+     * checksum).
+     */
+    public static final int RECORD_BYTES = 16;
+
+    /**
+     * Number of records of each bucket.
+     */
+    public static final int BUCKET_SIZE = 8;
+
+    private static final long MAGIC = 0x5455504d41544348L; // "TUPMATCH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final long MAX_BUCKETS = 1 << 23;
+
+    private static final long EMPTY = 0;
+
+    private final MappedByteBuffer buffer;
+    private final int bucketMask;
+
+    private final LongAdder nHits = new LongAdder(), nMisses = new LongAdder();
+    private final AtomicLong nEvictions = new AtomicLong(0);
+
+
+    /**
+     * Opens (or creates) the map stored in {@param file}. An existing file is
+     * reused (with its own size) if its header matches {@param fingerprint};
+     * otherwise, a new file with at most {@param maxBytes} bytes is created
+     * and renamed into place, so that processes still using the previous
+     * file keep a valid mapping. The header is checked under a file lock, so
+     * that concurrent processes do not initialize the file twice; if the file
+     * is replaced by another process while waiting for the lock, the new file
+     * is opened instead.
+     *
+     * @param file        the file storing the map.
+     * @param maxBytes    the maximum size (in bytes) of a new file.
+     * @param fingerprint the fingerprint of the data (e.g. of the instance),
+     *                    which must match the one of an existing file.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public MappedLongIntHashMap(File file, long maxBytes, long fingerprint) throws IOException {
+        long nBuckets = Long.highestOneBit(Math.max(1, Math.min(maxBytes / (RECORD_BYTES * BUCKET_SIZE), MAX_BUCKETS)));
+
+        MappedByteBuffer buffer = null;
+        while (buffer == null) {
+            Object fileKey = getFileKey(file);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+                FileLock lock = channel.lock();
+                try {
+                    // another process replaced the file before the lock was acquired: the new file is opened
+                    if (!Objects.equals(fileKey, getFileKey(file)))
+                        continue;
+
+                    long existingBuckets = readBuckets(channel, fingerprint);
+                    if (existingBuckets > 0) {
+                        nBuckets = existingBuckets;
+                        buffer = map(channel, nBuckets);
+                    }
+                    else if (channel.size() == 0) {
+                        // the file was just created (and is not mapped by anyone yet)
+                        buffer = initialize(raf, fingerprint, nBuckets);
+                    }
+                    else {
+                        buffer = replace(file, fingerprint, nBuckets);
+                    }
+                }
+                finally {
+                    lock.release();
+                }
+            }
+        }
+        this.buffer = buffer;
+        this.bucketMask = ( int ) nBuckets - 1;
+    }
+
+    /**
+     * Returns the value associated with {@param key} or {@param missing} if
+     * the map does not contain the key (or its record is torn).
+     *
+     * @param key     the (positive) key.
+     * @param missing the value returned if the key is not found.
+     * @return the value associated with {@param key} or {@param missing}.
+     */
+    @Override
+    public int get(long key, int missing) {
+        int first = HEADER_BYTES + (hash(key) & bucketMask) * BUCKET_SIZE * RECORD_BYTES;
+        for (int record = first; record < first + BUCKET_SIZE * RECORD_BYTES; record += RECORD_BYTES) {
+            if (buffer.getLong(record) == key) {
+                int value = buffer.getInt(record + 8);
+                if (buffer.getInt(record + 12) != checksum(key, value))
+                    break;
+
+                nHits.increment();
+                return value;
+            }
+        }
+
+        nMisses.increment();
+        return missing;
+    }
+
+    /**
+     * Associates {@param value} with {@param key}, replacing a record of the
+     * bucket of the key if it is full.
+     *
+     * @param key   the (positive) key.
+     * @param value the value.
+     * @return true if the record was written and false if the key was
+     * already stored.
+     */
+    @Override
+    public boolean put(long key, int value) {
+        int first = HEADER_BYTES + (hash(key) & bucketMask) * BUCKET_SIZE * RECORD_BYTES;
+        for (int record = first; record < first + BUCKET_SIZE * RECORD_BYTES; record += RECORD_BYTES) {
+            long current = buffer.getLong(record);
+            if (current == key && buffer.getInt(record + 12) == checksum(key, buffer.getInt(record + 8)))
+                return false;
+            if (current == key || current == EMPTY) {
+                write(record, key, value);
+                return true;
+            }
+        }
+
+        // full bucket: the record selected by the (high bits of the) hash is replaced
+        int record = first + ((hash(key) >>> 29) & (BUCKET_SIZE - 1)) * RECORD_BYTES;
+        write(record, key, value);
+        nEvictions.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = nHits.sum(), total = hits + nMisses.sum();
+        return total > 0 ? hits / ( double ) total : 0;
+    }
+
+    @Override
+    public long getNEvictions() {
+        return nEvictions.get();
+    }
+
+    /**
+     * Writes the dirty pages of the map to the file. This is not needed for
+     * other processes to see the entries (the pages are shared), only to
+     * guarantee that they survive a crash of the operating system.
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Writes a record: the value and checksum are written before the key.
+     */
+    private void write(int record, long key, int value) {
+        buffer.putLong(record, EMPTY);
+        buffer.putInt(record + 8, value);
+        buffer.putInt(record + 12, checksum(key, value));
+        buffer.putLong(record, key);
+    }
+
+    /**
+     * Sizes {@param raf} for {@param nBuckets} buckets, writes its header and
+     * maps it.
+     */
+    private static MappedByteBuffer initialize(RandomAccessFile raf, long fingerprint, long nBuckets) throws IOException {
+        raf.setLength(HEADER_BYTES + nBuckets * BUCKET_SIZE * RECORD_BYTES);
+        writeHeader(raf.getChannel(), fingerprint, nBuckets);
+        return map(raf.getChannel(), nBuckets);
+    }
+
+    /**
+     * Creates a new map in a temporary file of the directory of {@param file}
+     * and atomically renames it to {@param file}. The previous file is never
+     * truncated, as other processes may still have it mapped.
+     */
+    private static MappedByteBuffer replace(File file, long fingerprint, long nBuckets) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            MappedByteBuffer buffer = initialize(raf, fingerprint, nBuckets);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return buffer;
+        }
+        finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Returns the key that identifies the file currently named by {@param
+     * file} (e.g. its device and inode), creating an empty file if there is
+     * none, or null if the platform does not provide such keys.
+     */
+    private static Object getFileKey(File file) throws IOException {
+        file.createNewFile();
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Maps the header and the {@param nBuckets} buckets of the file.
+     */
+    private static MappedByteBuffer map(FileChannel channel, long nBuckets) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + nBuckets * BUCKET_SIZE * RECORD_BYTES);
+    }
+
+    /**
+     * Reads the header of the file, returning its number of buckets or 0 if
+     * the file is new or does not match the current format and {@param
+     * fingerprint}.
+     */
+    private static long readBuckets(FileChannel channel, long fingerprint) throws IOException {
+        if (channel.size() < HEADER_BYTES)
+            return 0;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getLong() != MAGIC || header.getInt() != VERSION || header.getInt() != BUCKET_SIZE || header.getLong() != fingerprint)
+            return 0;
+
+        long nBuckets = header.getLong();
+        if (nBuckets <= 0 || nBuckets > MAX_BUCKETS || Long.bitCount(nBuckets) != 1
+          || channel.size() != HEADER_BYTES + nBuckets * BUCKET_SIZE * RECORD_BYTES)
+            return 0;
+        return nBuckets;
+    }
+
+    /**
+     * Writes the header of a new file.
+     */
+    private static void writeHeader(FileChannel channel, long fingerprint, long nBuckets) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putLong(MAGIC).putInt(VERSION).putInt(BUCKET_SIZE).putLong(fingerprint).putLong(nBuckets);
+        header.rewind();
+        channel.write(header, 0);
+    }
+
+    /**
+     * Computes the checksum of a record.
+     *
+     * @param key   the key of the record.
+     * @param value the value of the record.
+     * @return the checksum of the record.
+     */
+    private static int checksum(long key, int value) {
+        return hash(key ^ (( long ) value << 32 | 0x9e3779b9L)) | 1;
+    }
+
+    /**
+     * Mixes the bits of {@param key} (MurmurHash3 finalizer).
+     *
+     * @param key the key.
+     * @return the hash of the key.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return ( int ) key;
+    }
+}